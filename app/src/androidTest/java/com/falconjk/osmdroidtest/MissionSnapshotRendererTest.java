@@ -0,0 +1,241 @@
+package com.falconjk.osmdroidtest;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.osmdroid.tileprovider.tilesource.ITileSource;
+import org.osmdroid.tileprovider.tilesource.XYTileSource;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 以合成的圖塊繪製快照，與 androidTest/assets/golden 下的標準圖比對。
+ * 底圖為棋盤格，疊加圖層只在 x % 3 == 0 的圖塊上有半透明紅色。
+ *
+ * 航線標準圖用純色方塊代替編號標記與箭頭，航點落在整數像素上且線寬為偶數，
+ * 所有邊緣都對齊像素、沒有部分覆蓋，結果不依裝置的字型與抗鋸齒而異。
+ */
+@RunWith(AndroidJUnit4.class)
+public class MissionSnapshotRendererTest {
+
+    private static final List<GeoPoint> ROUTE = Arrays.asList(
+            new GeoPoint(25.0350, 121.5674),
+            new GeoPoint(25.0340, 121.5664),
+            new GeoPoint(25.0330, 121.5654));
+    // 第 17 級世界像素座標上向右 600、再向上 450 的 L 形航線，箭頭位置也都是整數
+    private static final int ROUTE_ZOOM = 17;
+    private static final List<GeoPoint> PIXEL_ROUTE = Arrays.asList(
+            fromWorld(28107700, 14366100), fromWorld(28108300, 14366100), fromWorld(28108300, 14365650));
+    private static final int CHANNEL_TOLERANCE = 3;
+    private static final double MAX_MISMATCH_RATIO = 0.005;
+
+    private final ITileSource baseSource = new XYTileSource("golden_base", 0, 20, 256, ".png", new String[]{""});
+    private final ITileSource overlaySource = new XYTileSource("golden_overlay", 3, 20, 256, ".png", new String[]{""});
+    private final Map<String, Integer> loads = new HashMap<>();
+    private final MissionSnapshotRenderer.TileLoader tileLoader = (sourceName, index) -> {
+        synchronized (loads) {
+            String key = sourceName + "/" + index;
+            loads.put(key, loads.containsKey(key) ? loads.get(key) + 1 : 1);
+        }
+        int x = MapTileIndex.getX(index);
+        int y = MapTileIndex.getY(index);
+        if (sourceName.equals(baseSource.name())) {
+            return solidTile((x + y) % 2 == 0 ? Color.rgb(0xE0, 0xE0, 0xE0) : Color.rgb(0xB0, 0xC4, 0xDE));
+        }
+        return x % 3 == 0 ? solidTile(Color.argb(128, 255, 0, 0)) : null;
+    };
+    private Context context;
+    private MissionSnapshotRenderer renderer;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        renderer = new MissionSnapshotRenderer(context, tileLoader, new FixedDecorations());
+    }
+
+    // 航點：底部中央對齊、依編號變色的方塊；箭頭：上黑下白，可看出方向
+    private static class FixedDecorations implements MissionSnapshotRenderer.Decorations {
+        private final Paint paint = new Paint();
+
+        @Override
+        public void drawWaypoint(Canvas canvas, int number, float size) {
+            paint.setColor(Color.rgb(40 * number, 160, 40));
+            canvas.drawRect(-size / 8, -size / 4, size / 8, 0, paint);
+        }
+
+        @Override
+        public void drawArrow(Canvas canvas, float scale) {
+            float half = 8 * scale;
+            paint.setColor(Color.BLACK);
+            canvas.drawRect(-half, -half, half, 0, paint);
+            paint.setColor(Color.WHITE);
+            canvas.drawRect(-half, 0, half, half, paint);
+        }
+    }
+
+    @Test
+    public void tilesWithOverlay_matchGolden() throws IOException {
+        MissionSnapshotRenderer.Request request = new MissionSnapshotRenderer.Request(
+                ROUTE, baseSource, Collections.singletonList(overlaySource), 512, 384);
+        request.drawRoute = false;
+        assertMatchesGolden("tiles_with_overlay.png", renderer.renderToBitmap(request));
+    }
+
+    @Test
+    public void missionRoute_matchesGolden() throws IOException {
+        MissionSnapshotRenderer.Request request = new MissionSnapshotRenderer.Request(
+                PIXEL_ROUTE, baseSource, Collections.singletonList(overlaySource), 1024, 768);
+        request.decorationScale = 2f; // 線寬 44 與 26，邊緣落在像素邊界上
+        assertMatchesGolden("mission_route.png", renderer.renderToBitmap(request));
+    }
+
+    @Test
+    public void defaultDecorations_drawNumberedPins() {
+        MissionSnapshotRenderer pins = new MissionSnapshotRenderer(context, tileLoader);
+        MissionSnapshotRenderer.Request request = new MissionSnapshotRenderer.Request(
+                PIXEL_ROUTE, baseSource, null, 1024, 768);
+        Bitmap bitmap = pins.renderToBitmap(request);
+        // 第一個航點在 (212, 609)，標記圖示下半部是實心的紅色水滴
+        int pin = bitmap.getPixel(212, 609 - NumberedMarkerView.MARKER_SIZE / 3);
+        int red = context.getColor(R.color.waypoint_red);
+        assertEquals(Color.red(red), Color.red(pin), CHANNEL_TOLERANCE);
+        assertEquals(Color.green(red), Color.green(pin), CHANNEL_TOLERANCE);
+        assertEquals(Color.blue(red), Color.blue(pin), CHANNEL_TOLERANCE);
+        pins.shutdown();
+    }
+
+    @Test
+    public void missingTiles_leaveBackground() {
+        MissionSnapshotRenderer offline = new MissionSnapshotRenderer(context, (sourceName, index) -> null);
+        MissionSnapshotRenderer.Request request = new MissionSnapshotRenderer.Request(
+                ROUTE, baseSource, null, 64, 64);
+        request.drawRoute = false;
+        Bitmap bitmap = offline.renderToBitmap(request);
+        assertEquals(MissionSnapshotRenderer.BACKGROUND_COLOR, bitmap.getPixel(32, 32));
+    }
+
+    @Test
+    public void thumbnail_usesTilesCachedAtSnapshotZoom() {
+        // 只有瀏覽快照時（第 ROUTE_ZOOM 級）快取的圖塊，縮圖的層級較低
+        MissionSnapshotRenderer.TileLoader snapshotZoomOnly = (sourceName, index) ->
+                MapTileIndex.getZoom(index) == ROUTE_ZOOM ? tileLoader.loadTile(sourceName, index) : null;
+        MissionSnapshotRenderer thumbnails = new MissionSnapshotRenderer(context, snapshotZoomOnly, new FixedDecorations());
+        MissionSnapshotRenderer.Request request = new MissionSnapshotRenderer.Request(
+                PIXEL_ROUTE, baseSource, null, 320, 180);
+        request.drawRoute = false;
+        Bitmap bitmap = thumbnails.renderToBitmap(request);
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            for (int x = 0; x < bitmap.getWidth(); x++) {
+                assertNotEquals("(" + x + ", " + y + ")", MissionSnapshotRenderer.BACKGROUND_COLOR, bitmap.getPixel(x, y));
+            }
+        }
+        thumbnails.shutdown();
+    }
+
+    @Test
+    public void batch_decodesSharedTilesOnce() throws Exception {
+        List<MissionSnapshotRenderer.Request> requests = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        File dir = context.getCacheDir();
+        for (int i = 0; i < 8; i++) {
+            MissionSnapshotRenderer.Request thumbnail = new MissionSnapshotRenderer.Request(
+                    ROUTE, baseSource, Collections.singletonList(overlaySource), 320, 180);
+            thumbnail.decorationScale = 0.33f;
+            requests.add(thumbnail);
+            files.add(new File(dir, "thumb_" + i + ".png"));
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        Exception[] error = new Exception[1];
+        renderer.renderBatch(requests, files, (result, e) -> {
+            error[0] = e;
+            done.countDown();
+        });
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertNull(error[0]);
+
+        for (File file : files) {
+            Bitmap png = BitmapFactory.decodeFile(file.getPath());
+            assertNotNull(png);
+            assertEquals(320, png.getWidth());
+            assertEquals(180, png.getHeight());
+        }
+        synchronized (loads) {
+            assertFalse(loads.isEmpty());
+            for (Map.Entry<String, Integer> entry : loads.entrySet()) {
+                // 沒有資料的疊加圖塊不會進入快取，其餘每張圖塊只讀取一次
+                if (entry.getKey().startsWith(baseSource.name())) {
+                    assertEquals(entry.getKey(), 1, (int) entry.getValue());
+                }
+            }
+        }
+        renderer.shutdown();
+    }
+
+    private static byte[] solidTile(int color) {
+        Bitmap tile = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        tile.eraseColor(color);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tile.compress(Bitmap.CompressFormat.PNG, 100, out);
+        return out.toByteArray();
+    }
+
+    // 第 ROUTE_ZOOM 級（256 像素圖塊）世界像素座標的反投影
+    private static GeoPoint fromWorld(double x, double y) {
+        double size = 256L << ROUTE_ZOOM;
+        double longitude = x / size * 360 - 180;
+        double latitude = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / size))));
+        return new GeoPoint(latitude, longitude);
+    }
+
+    private void assertMatchesGolden(String name, Bitmap actual) throws IOException {
+        Bitmap golden;
+        try (InputStream in = InstrumentationRegistry.getInstrumentation().getContext()
+                .getAssets().open("golden/" + name)) {
+            golden = BitmapFactory.decodeStream(in);
+        }
+
+        assertEquals(golden.getWidth(), actual.getWidth());
+        assertEquals(golden.getHeight(), actual.getHeight());
+        int mismatched = 0;
+        for (int y = 0; y < golden.getHeight(); y++) {
+            for (int x = 0; x < golden.getWidth(); x++) {
+                int a = actual.getPixel(x, y);
+                int g = golden.getPixel(x, y);
+                if (Math.abs(Color.red(a) - Color.red(g)) > CHANNEL_TOLERANCE
+                        || Math.abs(Color.green(a) - Color.green(g)) > CHANNEL_TOLERANCE
+                        || Math.abs(Color.blue(a) - Color.blue(g)) > CHANNEL_TOLERANCE
+                        || Math.abs(Color.alpha(a) - Color.alpha(g)) > CHANNEL_TOLERANCE) {
+                    mismatched++;
+                }
+            }
+        }
+        double ratio = (double) mismatched / (golden.getWidth() * golden.getHeight());
+        assertTrue(name + " 有 " + mismatched + " 個像素不同", ratio <= MAX_MISMATCH_RATIO);
+    }
+}
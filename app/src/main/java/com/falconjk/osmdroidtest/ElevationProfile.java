@@ -0,0 +1,116 @@
+package com.falconjk.osmdroidtest;
+
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 航線的地形剖面：每個航段（leg）保存一組固定間距的地面高度取樣。
+ * 航點異動時只重新取樣受影響的航段，拖動一個航點最多只動到前後兩段。
+ *
+ * 航線本身沒有高度資訊，飛行高度以第一個航點（起飛點）的地面高度
+ * 加上相對高度計算，離地間隙 = 飛行高度 - 航段最高地面。
+ */
+public class ElevationProfile {
+
+    public static final class Leg {
+        public final float[] samples;
+        public final double lengthMeters;
+        public final float maxGround;
+
+        Leg(float[] samples, double lengthMeters) {
+            this.samples = samples;
+            this.lengthMeters = lengthMeters;
+            float max = Float.NaN;
+            for (float s : samples) {
+                if (!Float.isNaN(s) && (Float.isNaN(max) || s > max)) max = s;
+            }
+            this.maxGround = max;
+        }
+    }
+
+    private final ElevationProvider provider;
+    private final double spacingMeters;
+    private final double relativeAltitude;
+    private final List<GeoPoint> waypoints = new ArrayList<>();
+    private final List<Leg> legs = new ArrayList<>(); // legs.get(i) 為航點 i -> i+1
+
+    public ElevationProfile(ElevationProvider provider, double spacingMeters, double relativeAltitude) {
+        this.provider = provider;
+        this.spacingMeters = spacingMeters;
+        this.relativeAltitude = relativeAltitude;
+    }
+
+    public void setWaypoints(List<GeoPoint> points) {
+        waypoints.clear();
+        legs.clear();
+        for (GeoPoint p : points) {
+            addWaypoint(p);
+        }
+    }
+
+    public void addWaypoint(GeoPoint point) {
+        insertWaypoint(waypoints.size(), point);
+    }
+
+    public void insertWaypoint(int index, GeoPoint point) {
+        waypoints.add(index, clone(point));
+        if (waypoints.size() < 2) return;
+        if (index > 0 && index < waypoints.size() - 1) {
+            // 原本 index-1 -> index 的航段被拆成兩段
+            legs.set(index - 1, sample(index - 1));
+            legs.add(index, sample(index));
+        } else if (index == 0) {
+            legs.add(0, sample(0));
+        } else {
+            legs.add(sample(index - 1));
+        }
+    }
+
+    public void moveWaypoint(int index, GeoPoint point) {
+        waypoints.set(index, clone(point));
+        if (index > 0) legs.set(index - 1, sample(index - 1));
+        if (index < legs.size()) legs.set(index, sample(index));
+    }
+
+    public void removeWaypoint(int index) {
+        waypoints.remove(index);
+        if (legs.isEmpty()) return;
+        if (index == 0) {
+            legs.remove(0);
+        } else if (index > legs.size() - 1) {
+            legs.remove(legs.size() - 1);
+        } else {
+            // 前後兩段合併成一段
+            legs.remove(index);
+            legs.set(index - 1, sample(index - 1));
+        }
+    }
+
+    public List<Leg> getLegs() {
+        return Collections.unmodifiableList(legs);
+    }
+
+    // 飛行高度（海拔），起飛點無高程資料時回傳 NaN
+    public double getFlightAltitude() {
+        if (legs.isEmpty()) return Double.NaN;
+        return legs.get(0).samples[0] + relativeAltitude;
+    }
+
+    public double getMinClearance(int legIndex) {
+        return getFlightAltitude() - legs.get(legIndex).maxGround;
+    }
+
+    private Leg sample(int startIndex) {
+        GeoPoint start = waypoints.get(startIndex);
+        GeoPoint end = waypoints.get(startIndex + 1);
+        return new Leg(provider.sampleSegment(start, end, spacingMeters), start.distanceToAsDouble(end));
+    }
+
+    // Marker 的位置物件在拖動時會被直接修改，這裡保存一份副本
+    private static GeoPoint clone(GeoPoint p) {
+        return new GeoPoint(p.getLatitude(), p.getLongitude());
+    }
+}
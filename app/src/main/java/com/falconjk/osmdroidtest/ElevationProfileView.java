@@ -0,0 +1,92 @@
+package com.falconjk.osmdroidtest;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.view.View;
+
+import java.util.List;
+
+/**
+ * 繪製航線地形剖面：地面高度、飛行高度線，以及航段分隔線。
+ * 間隙不足的航段以紅色標示。
+ */
+public class ElevationProfileView extends View {
+    public static final float MIN_CLEARANCE = 30f; // 低於此離地間隙視為警告
+
+    private final Paint groundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint warningPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint altitudePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint legPaint = new Paint();
+    private final Path path = new Path();
+    private ElevationProfile profile;
+
+    public ElevationProfileView(Context context) {
+        super(context);
+        groundPaint.setColor(Color.rgb(139, 115, 85));
+        groundPaint.setStyle(Paint.Style.FILL);
+        warningPaint.setColor(Color.argb(160, 208, 70, 70));
+        warningPaint.setStyle(Paint.Style.FILL);
+        altitudePaint.setColor(context.getColor(R.color.color_bright_blue));
+        altitudePaint.setStrokeWidth(4f);
+        legPaint.setColor(Color.GRAY);
+        legPaint.setStrokeWidth(1f);
+    }
+
+    public void setProfile(ElevationProfile profile) {
+        this.profile = profile;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (profile == null || profile.getLegs().isEmpty()) return;
+
+        List<ElevationProfile.Leg> legs = profile.getLegs();
+        double totalLength = 0;
+        float minGround = Float.MAX_VALUE;
+        float maxGround = -Float.MAX_VALUE;
+        for (ElevationProfile.Leg leg : legs) {
+            totalLength += leg.lengthMeters;
+            for (float s : leg.samples) {
+                if (Float.isNaN(s)) continue;
+                minGround = Math.min(minGround, s);
+                maxGround = Math.max(maxGround, s);
+            }
+        }
+        double altitude = profile.getFlightAltitude();
+        if (minGround > maxGround || Double.isNaN(altitude) || totalLength <= 0) return;
+
+        float top = (float) Math.max(maxGround, altitude) + 20f;
+        float bottom = Math.min(minGround, (float) altitude) - 20f;
+        float width = getWidth();
+        float height = getHeight();
+        float yScale = height / (top - bottom);
+        float xScale = (float) (width / totalLength);
+
+        double offset = 0;
+        for (ElevationProfile.Leg leg : legs) {
+            float x0 = (float) (offset * xScale);
+            float x1 = (float) ((offset + leg.lengthMeters) * xScale);
+            path.reset();
+            path.moveTo(x0, height);
+            for (int i = 0; i < leg.samples.length; i++) {
+                float s = Float.isNaN(leg.samples[i]) ? bottom : leg.samples[i];
+                float x = x0 + (x1 - x0) * i / (leg.samples.length - 1);
+                path.lineTo(x, (top - s) * yScale);
+            }
+            path.lineTo(x1, height);
+            path.close();
+            boolean warning = altitude - leg.maxGround < MIN_CLEARANCE;
+            canvas.drawPath(path, warning ? warningPaint : groundPaint);
+            canvas.drawLine(x1, 0, x1, height, legPaint);
+            offset += leg.lengthMeters;
+        }
+
+        float altitudeY = (float) ((top - altitude) * yScale);
+        canvas.drawLine(0, altitudeY, width, altitudeY, altitudePaint);
+    }
+}
@@ -0,0 +1,112 @@
+package com.falconjk.osmdroidtest;
+
+import android.util.Log;
+
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 從本機目錄讀取 SRTM 高程圖塊，並以 LRU 保留少量已映射的圖塊。
+ * 被淘汰的圖塊不會主動解除映射，交由 GC 回收 MappedByteBuffer。
+ */
+public class ElevationProvider {
+
+    private static final String TAG = "ElevationProvider";
+    private static final int DEFAULT_MAX_TILES = 4;
+
+    private final File demDir;
+    private final LinkedHashMap<Integer, HgtTile> tiles;
+    // 找不到檔案的圖塊另外記錄，避免每個取樣點都去查檔案系統，也不佔用 LRU 的名額
+    private final HashSet<Integer> missing = new HashSet<>();
+    private int tilesOpened = 0;
+
+    public ElevationProvider(File demDir) {
+        this(demDir, DEFAULT_MAX_TILES);
+    }
+
+    public ElevationProvider(File demDir, final int maxTiles) {
+        this.demDir = demDir;
+        this.tiles = new LinkedHashMap<Integer, HgtTile>(maxTiles + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, HgtTile> eldest) {
+                return size() > maxTiles;
+            }
+        };
+    }
+
+    public synchronized double getElevation(double latitude, double longitude) {
+        HgtTile tile = tileFor(latitude, longitude);
+        return tile == null ? Double.NaN : tile.getElevation(latitude, longitude);
+    }
+
+    /**
+     * 沿著航段以固定間距批次取樣地面高度，包含兩端點。
+     * 航段很短，直接在經緯度上線性內插即可。
+     */
+    public synchronized float[] sampleSegment(GeoPoint start, GeoPoint end, double spacingMeters) {
+        double distance = start.distanceToAsDouble(end);
+        int count = Math.max(2, (int) Math.ceil(distance / spacingMeters) + 1);
+        float[] samples = new float[count];
+
+        double lat0 = start.getLatitude();
+        double lon0 = start.getLongitude();
+        double dLat = end.getLatitude() - lat0;
+        double dLon = end.getLongitude() - lon0;
+
+        int currentKey = Integer.MIN_VALUE;
+        HgtTile currentTile = null;
+        for (int i = 0; i < count; i++) {
+            double ratio = (double) i / (count - 1);
+            double lat = lat0 + dLat * ratio;
+            double lon = lon0 + dLon * ratio;
+            // 連續的取樣點大多落在同一個圖塊，省去 LRU 查詢
+            int key = tileKey(lat, lon);
+            if (key != currentKey) {
+                currentKey = key;
+                currentTile = tileFor(lat, lon);
+            }
+            samples[i] = currentTile == null ? Float.NaN : (float) currentTile.getElevation(lat, lon);
+        }
+        return samples;
+    }
+
+    // 目前開過的圖塊數，用於確認 LRU 行為
+    synchronized int getTilesOpened() {
+        return tilesOpened;
+    }
+
+    private HgtTile tileFor(double latitude, double longitude) {
+        int key = tileKey(latitude, longitude);
+        HgtTile tile = tiles.get(key);
+        if (tile != null || missing.contains(key)) {
+            return tile;
+        }
+
+        int latOrigin = (int) Math.floor(latitude);
+        int lonOrigin = (int) Math.floor(longitude);
+        File file = new File(demDir, HgtTile.fileName(latOrigin, lonOrigin));
+        if (file.isFile()) {
+            try {
+                tile = HgtTile.open(file, latOrigin, lonOrigin);
+                tilesOpened++;
+            } catch (IOException e) {
+                Log.e(TAG, "無法讀取高程圖塊 " + file, e);
+            }
+        }
+        if (tile == null) {
+            missing.add(key);
+        } else {
+            tiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    private static int tileKey(double latitude, double longitude) {
+        return ((int) Math.floor(latitude) + 90) * 360 + ((int) Math.floor(longitude) + 180);
+    }
+}
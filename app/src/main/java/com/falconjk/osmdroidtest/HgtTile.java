@@ -0,0 +1,89 @@
+package com.falconjk.osmdroidtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * 一個 SRTM .hgt 高程圖塊，透過記憶體映射讀取。
+ * 檔名如 N25E121.hgt 覆蓋緯度 25~26、經度 121~122，
+ * 內容為 big-endian 的 16 位元高度（公尺），第一列為北緣。
+ */
+public class HgtTile {
+    public static final short VOID_VALUE = -32768;
+
+    private final int latOrigin; // 南緣緯度
+    private final int lonOrigin; // 西緣經度
+    private final int size;      // 每邊取樣點數（1201 / 3601，測試檔可更小）
+    private final ShortBuffer heights;
+
+    private HgtTile(int latOrigin, int lonOrigin, int size, ShortBuffer heights) {
+        this.latOrigin = latOrigin;
+        this.lonOrigin = lonOrigin;
+        this.size = size;
+        this.heights = heights;
+    }
+
+    public static HgtTile open(File file, int latOrigin, int lonOrigin) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long length = channel.size();
+            int size = (int) Math.round(Math.sqrt(length / 2.0));
+            if (size < 2 || (long) size * size * 2 != length) {
+                throw new IOException("不是有效的 hgt 檔: " + file + " (" + length + " bytes)");
+            }
+            // 關閉 channel 後映射仍然有效，直到 buffer 被回收
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new HgtTile(latOrigin, lonOrigin, size, buffer.asShortBuffer());
+        }
+    }
+
+    // 依 SRTM 命名規則產生檔名，例如 (25, 121) -> N25E121.hgt
+    public static String fileName(int latOrigin, int lonOrigin) {
+        return String.format(Locale.US, "%s%02d%s%03d.hgt",
+                latOrigin >= 0 ? "N" : "S", Math.abs(latOrigin),
+                lonOrigin >= 0 ? "E" : "W", Math.abs(lonOrigin));
+    }
+
+    /**
+     * 以雙線性內插取得高度，無資料的角點不參與權重。
+     * 四個角點都無資料時回傳 NaN。
+     */
+    public double getElevation(double latitude, double longitude) {
+        int last = size - 1;
+        double y = (latOrigin + 1 - latitude) * last;
+        double x = (longitude - lonOrigin) * last;
+        y = Math.max(0, Math.min(last, y));
+        x = Math.max(0, Math.min(last, x));
+
+        int row = Math.min((int) y, last - 1);
+        int col = Math.min((int) x, last - 1);
+        double fy = y - row;
+        double fx = x - col;
+
+        double sum = 0;
+        double weight = 0;
+        double fallback = 0;
+        int valid = 0;
+        for (int i = 0; i < 4; i++) {
+            int dr = i >> 1;
+            int dc = i & 1;
+            short h = heights.get((row + dr) * size + col + dc);
+            if (h == VOID_VALUE) continue;
+            double w = (dr == 0 ? 1 - fy : fy) * (dc == 0 ? 1 - fx : fx);
+            sum += h * w;
+            weight += w;
+            fallback += h;
+            valid++;
+        }
+        if (valid == 0) return Double.NaN;
+        // 剛好落在無資料的格點上時，改用其餘角點的平均
+        return weight > 1e-9 ? sum / weight : fallback / valid;
+    }
+}
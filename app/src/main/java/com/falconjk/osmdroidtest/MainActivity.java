@@ -1,7 +1,5 @@
 package com.falconjk.osmdroidtest;
 
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.drawable.BitmapDrawable;
 import android.os.Bundle;
@@ -9,10 +7,11 @@ import android.os.Handler;
 import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.util.Log;
-import android.view.View;
 import android.widget.Button;
 import android.widget.CompoundButton;
+import android.widget.LinearLayout;
 import android.widget.Switch;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -38,16 +37,29 @@ import org.osmdroid.views.overlay.Marker;
 import org.osmdroid.views.overlay.Polyline;
 import org.osmdroid.views.overlay.TilesOverlay;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class MainActivity extends AppCompatActivity implements MapEventsReceiver {
 
-    private static final int ARROWS_PER_LINE = 2; // 每條線上的箭頭數量，可以根據需求調整
+    static final int ARROWS_PER_LINE = 2; // 每條線上的箭頭數量，可以根據需求調整
+    static final int SINGLE_POINT_ZOOM = 15; // 只有一個航點時居中顯示的縮放層級，快照也使用
+    private static final double DEM_SAMPLE_SPACING = 30.0; // 地形取樣間距（公尺），約為 SRTM 1 角秒解析度
+    private static final double MISSION_RELATIVE_ALTITUDE = 120.0; // 相對起飛點的飛行高度（公尺）
+    private static final long SYNC_BATCH_WINDOW = 200; // 航線異動批次送出的間隔（毫秒）
+    private static final int MAX_HISTORY_STEPS = 100; // 可復原的步數
+    private static final int SNAPSHOT_WIDTH = 1920; // 簡報用快照尺寸
+    private static final int SNAPSHOT_HEIGHT = 1080;
+    private static final int THUMBNAIL_WIDTH = 320; // 任務清單縮圖尺寸
+    private static final int THUMBNAIL_HEIGHT = 180;
+    // 縮圖上的線寬、箭頭與標記：等比縮小後只剩 1/6，難以辨識，因此再放大兩倍
+    private static final float THUMBNAIL_DECORATION_SCALE = (float) THUMBNAIL_WIDTH / SNAPSHOT_WIDTH * 2;
 
     private MapView map;
     private Marker droneMarker; // 無人機標記
@@ -69,6 +81,17 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
     private Switch switch_power;
     private TilesOverlay tilesover_limitarea_lay;
     private TilesOverlay tilesover_power_lay;
+    private Button btn_profile;
+    private ElevationProfile elevationProfile;
+    private MissionSync missionSync;
+    private Button btn_undo;
+    private Button btn_redo;
+    private PersistentVector<Waypoint> route; // 目前航線，與 markersDict 的順序一致
+    private RouteHistory routeHistory;
+    private Button btn_snapshot;
+    private ITileSource noFlyTileSource;
+    private ITileSource powerTileSource;
+    private MissionSnapshotRenderer snapshotRenderer;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -92,9 +115,20 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         GeoPoint startPoint = new GeoPoint(25.0330, 121.5654);
         mapController.setCenter(startPoint);
 
+        // 航線異動同步到地面站；位址由 gradle 屬性 groundStationHost 設定，未設定時不同步
+        missionSync = new MissionSync(BuildConfig.GROUND_STATION_HOST, BuildConfig.GROUND_STATION_PORT, SYNC_BATCH_WINDOW);
+        if (!BuildConfig.GROUND_STATION_HOST.isEmpty()) {
+            missionSync.start();
+        }
+
         // 初始化無人機標記
         initDroneMarker();
 
+        btn_undo = (Button) findViewById(R.id.btn_undo);
+        btn_undo.setOnClickListener(v -> undoRouteEdit());
+        btn_redo = (Button) findViewById(R.id.btn_redo);
+        btn_redo.setOnClickListener(v -> redoRouteEdit());
+
         // 初始化航點路線
         initWaypoints();
 
@@ -106,6 +140,13 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         btn_center = (Button) findViewById(R.id.btn_center);
         btn_center.setOnClickListener(v -> centerOnRoute());
 
+        btn_profile = (Button) findViewById(R.id.btn_profile);
+        btn_profile.setOnClickListener(v -> showElevationProfile());
+
+        btn_snapshot = (Button) findViewById(R.id.btn_snapshot);
+        btn_snapshot.setOnClickListener(v -> exportMissionSnapshot());
+        snapshotRenderer = new MissionSnapshotRenderer(this, new MissionSnapshotRenderer.OfflineTileLoader());
+
         switch_nofly = (Switch) findViewById(R.id.switch_nofly);
         switch_power = (Switch) findViewById(R.id.switch_power);
 
@@ -161,13 +202,22 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         pathInnerPolyline.getOutlinePaint().setStrokeWidth(13f);
         pathOutterPolyline.getOutlinePaint().setStrokeWidth(22f);
         markersFolder = new FolderOverlay();
+        // 高程圖塊放在 <外部檔案目錄>/dem/N25E121.hgt
+        elevationProfile = new ElevationProfile(
+                new ElevationProvider(getExternalFilesDir("dem")),
+                DEM_SAMPLE_SPACING, MISSION_RELATIVE_ALTITUDE);
         map.getOverlays().add(pathOutterPolyline);
         map.getOverlays().add(pathInnerPolyline);
         map.getOverlays().add(markersFolder);
+        route = PersistentVector.empty();
+        routeHistory = new RouteHistory(route, MAX_HISTORY_STEPS);
 
         addWaypoint(new GeoPoint(25.0350, 121.5674), false); // 航點1
         addWaypoint(new GeoPoint(25.0340, 121.5664), false); // 航點2
         addWaypoint(new GeoPoint(25.0330, 121.5654), false); // 航點3
+        // 示例航點不列入復原歷史
+        routeHistory.reset(route);
+        updateHistoryButtons();
         map.invalidate();
     }
 
@@ -217,6 +267,13 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         handler.removeCallbacks(moveDroneRunnable);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        missionSync.stop();
+        snapshotRenderer.shutdown();
+    }
+
     private void initOnlineMap() {
 
         OnlineTileSourceBase wmst_emap_3857 = new XYTileSource("wmst_emap_3857", 5, 20, 256, ".png", new String[]{"https://wmts.nlsc.gov.tw/wmts/EMAP/default/EPSG:3857/"}) {
@@ -252,7 +309,7 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
     }
 
     private void initLayer() {
-        MapTileProviderBasic tile_limit_area_provider = new MapTileProviderBasic(this, new OnlineTileSourceBase("MG_RS", 3, 20, 256, ".png", new String[]{"https://earthbook.xyz/tms/LIDAR:noflyarea@EPSG:900913@png/"}) {
+        noFlyTileSource = new OnlineTileSourceBase("MG_RS", 3, 20, 256, ".png", new String[]{"https://earthbook.xyz/tms/LIDAR:noflyarea@EPSG:900913@png/"}) {
             @Override
             public String getTileURLString(long pMapTileIndex) {
 
@@ -261,7 +318,8 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
                 return baseUrl;
             }
 
-        });
+        };
+        MapTileProviderBasic tile_limit_area_provider = new MapTileProviderBasic(this, noFlyTileSource);
 
 
         tilesover_limitarea_lay = new TilesOverlay(tile_limit_area_provider, this);
@@ -269,7 +327,7 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         tilesover_limitarea_lay.setLoadingBackgroundColor(Color.TRANSPARENT);
         tilesover_limitarea_lay.setLoadingLineColor(Color.TRANSPARENT);
 
-        MapTileProviderBasic tile_power_provider = new MapTileProviderBasic(this, new OnlineTileSourceBase("MG_ET", 3, 20, 256, ".png", new String[]{"https://earthbook.xyz/tms/LIDAR:power@EPSG:900913@png/"}) {
+        powerTileSource = new OnlineTileSourceBase("MG_ET", 3, 20, 256, ".png", new String[]{"https://earthbook.xyz/tms/LIDAR:power@EPSG:900913@png/"}) {
             @Override
             public String getTileURLString(long pMapTileIndex) {
 
@@ -278,7 +336,8 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
                 return baseUrl;
             }
 
-        });
+        };
+        MapTileProviderBasic tile_power_provider = new MapTileProviderBasic(this, powerTileSource);
 
         tilesover_power_lay = new TilesOverlay(tile_power_provider, this);
         tile_power_provider.setTileRequestCompleteHandler(map.getTileRequestCompleteHandler());
@@ -306,32 +365,36 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
 
     private void addWaypoint(GeoPoint newPoint, boolean invalidateNow) {
         String uuid = UUID.randomUUID().toString();
+        Marker newMarker = createWaypointMarker(uuid, newPoint, markersDict.size() + 1);
+
+        String lastUuid = null;
+        if (!markersDict.isEmpty()) {
+            Marker lastMarker = markersDict.values().stream().reduce((a, b) -> b).orElse(null);
+            if (lastMarker != null) {
+                lastUuid = (String) lastMarker.getRelatedObject();
+                updatePolylineArrowMarkers(lastMarker, newMarker);
+            }
+        }
+
+
+        markersFolder.add(newMarker);
+        markersDict.put(uuid, newMarker);
+        pathInnerPolyline.addPoint(newPoint);
+        pathOutterPolyline.addPoint(newPoint);
+        elevationProfile.addWaypoint(newPoint);
+        missionSync.recordInsert(uuid, lastUuid, newPoint);
+        route = route.add(new Waypoint(uuid, newPoint));
+        commitRouteEdit();
+        if (invalidateNow)
+            map.invalidate();
+    }
+
+    private Marker createWaypointMarker(String uuid, GeoPoint point, int number) {
         Marker newMarker = new Marker(map);
-        newMarker.setPosition(newPoint);
-        // 創建帶數字的標記視圖
-        NumberedMarkerView markerView = new NumberedMarkerView(this);
-        markerView.setNumber(String.valueOf(markersDict.size() + 1));
-
-        // 使用固定尺寸創建位圖
-        Bitmap bitmap = Bitmap.createBitmap(
-                NumberedMarkerView.MARKER_SIZE,
-                NumberedMarkerView.MARKER_SIZE,
-                Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-
-        // 強制進行一次布局
-        markerView.measure(
-                View.MeasureSpec.makeMeasureSpec(NumberedMarkerView.MARKER_SIZE, View.MeasureSpec.EXACTLY),
-                View.MeasureSpec.makeMeasureSpec(NumberedMarkerView.MARKER_SIZE, View.MeasureSpec.EXACTLY)
-        );
-        markerView.layout(0, 0, NumberedMarkerView.MARKER_SIZE, NumberedMarkerView.MARKER_SIZE);
-
-        markerView.draw(canvas);
-        BitmapDrawable drawable = new BitmapDrawable(getResources(), bitmap);
-
-        newMarker.setIcon(drawable);
+        newMarker.setPosition(point);
+        newMarker.setIcon(createNumberedIcon(number));
         newMarker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
-        newMarker.setTitle("航點" + (markersDict.size() + 1));
+        newMarker.setTitle("航點" + number);
         newMarker.setRelatedObject(uuid);  // 保存 UUID
         newMarker.setOnMarkerClickListener((marker, mapView) -> {
             // 顯示對話框
@@ -356,12 +419,28 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
             public void onMarkerDrag(Marker marker) {
                 // 拖動過程中更新路徑
                 updatePathForMarker(marker);
+                missionSync.recordMove((String) marker.getRelatedObject(), marker.getPosition());
             }
 
             @Override
             public void onMarkerDragEnd(Marker marker) {
                 // 拖動結束後更新路徑和航點列表
                 updatePathForMarker(marker);
+                String markerUuid = (String) marker.getRelatedObject();
+                int index = new ArrayList<>(markersDict.values()).indexOf(marker);
+                if (index < 0) return;
+                GeoPoint position = marker.getPosition();
+                // 拖動中已送出中間位置，結束時一定要同步最後位置
+                missionSync.recordMove(markerUuid, position);
+                Waypoint previous = route.get(index);
+                // 長按後沒有移動就放開，不產生空的復原步驟
+                if (previous.latitude == position.getLatitude() && previous.longitude == position.getLongitude()) {
+                    return;
+                }
+                // 只重新取樣前後兩個航段的地形
+                elevationProfile.moveWaypoint(index, position);
+                route = route.set(index, new Waypoint(markerUuid, position));
+                commitRouteEdit();
                 Toast.makeText(MainActivity.this, "航點位置已更新", Toast.LENGTH_SHORT).show();
             }
 
@@ -371,21 +450,12 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
                 marker.closeInfoWindow(); // 如果有信息窗口打開，先關閉它
             }
         });
+        return newMarker;
+    }
 
-        if (!markersDict.isEmpty()) {
-            Marker lastMarker = markersDict.values().stream().reduce((a, b) -> b).orElse(null);
-            if (lastMarker != null) {
-                updatePolylineArrowMarkers(lastMarker, newMarker);
-            }
-        }
-
-
-        markersFolder.add(newMarker);
-        markersDict.put(uuid, newMarker);
-        pathInnerPolyline.addPoint(newPoint);
-        pathOutterPolyline.addPoint(newPoint);
-        if (invalidateNow)
-            map.invalidate();
+    // 創建帶數字的標記圖示
+    private BitmapDrawable createNumberedIcon(int number) {
+        return new BitmapDrawable(getResources(), NumberedMarkerView.createBitmap(this, number));
     }
 
     private void updatePolylineArrowMarkers(Marker startMarker, Marker endMarker) {
@@ -456,30 +526,12 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         map.invalidate();
     }
 
-    // 更新所有標記的數字
-    private void updateWaypointNumbers() {
-        ArrayList<Marker> markers = new ArrayList<>(markersDict.values());
-        for (int i = 0; i < markers.size(); i++) {
-            Marker marker = markers.get(i);
-            NumberedMarkerView markerView = new NumberedMarkerView(this);
-            markerView.setNumber(String.valueOf(i + 1));
-
-            Bitmap bitmap = Bitmap.createBitmap(
-                    NumberedMarkerView.MARKER_SIZE,
-                    NumberedMarkerView.MARKER_SIZE,
-                    Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(bitmap);
-
-            markerView.measure(
-                    View.MeasureSpec.makeMeasureSpec(NumberedMarkerView.MARKER_SIZE, View.MeasureSpec.EXACTLY),
-                    View.MeasureSpec.makeMeasureSpec(NumberedMarkerView.MARKER_SIZE, View.MeasureSpec.EXACTLY)
-            );
-            markerView.layout(0, 0, NumberedMarkerView.MARKER_SIZE, NumberedMarkerView.MARKER_SIZE);
-
-            markerView.draw(canvas);
-            BitmapDrawable drawable = new BitmapDrawable(getResources(), bitmap);
-
-            marker.setIcon(drawable);
+    // 更新標記的數字與標題，只重繪編號有變動的部分 [fromIndex, toIndex)
+    private void updateWaypointNumbers(int fromIndex, int toIndex) {
+        for (int i = Math.max(0, fromIndex); i < Math.min(route.size(), toIndex); i++) {
+            Marker marker = markersDict.get(route.get(i).id);
+            marker.setIcon(createNumberedIcon(i + 1));
+            marker.setTitle("航點" + (i + 1));
         }
         map.invalidate();
     }
@@ -502,26 +554,12 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
 
         // 1. 刪除指向當前點的箭頭（來自前一個點的箭頭）
         if (index > 0) {
-            String currentUuid = uuid;
-            for (int i = 1; i <= ARROWS_PER_LINE; i++) {
-                String arrowId = currentUuid + "_" + i;
-                Marker arrowMarker = arrowsDict.remove(arrowId);
-                if (arrowMarker != null) {
-                    markersFolder.remove(arrowMarker);
-                }
-            }
+            removeIncomingArrows(uuid);
         }
 
         // 2. 刪除從當前點指向下一個點的箭頭
         if (index < markers.size() - 1) {
-            String nextUuid = (String) markers.get(index + 1).getRelatedObject();
-            for (int i = 1; i <= ARROWS_PER_LINE; i++) {
-                String arrowId = nextUuid + "_" + i;
-                Marker arrowMarker = arrowsDict.remove(arrowId);
-                if (arrowMarker != null) {
-                    markersFolder.remove(arrowMarker);
-                }
-            }
+            removeIncomingArrows((String) markers.get(index + 1).getRelatedObject());
         }
 
         // 3. 如果需要連接前後點，創建新的箭頭
@@ -534,17 +572,138 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         // 4. 刪除waypoint本身
         markersDict.remove(uuid);
         markersFolder.remove(markerToDelete);
+        elevationProfile.removeWaypoint(index);
+        missionSync.recordDelete(uuid);
+        route = route.remove(index);
+        commitRouteEdit();
 
         // 5. 更新路徑和標題
         List<GeoPoint> waypointPointList = getWaypointPointList();
         pathOutterPolyline.setPoints(waypointPointList);
         pathInnerPolyline.setPoints(waypointPointList);
-        updateWaypointTitles();
-        updateWaypointNumbers();
+        updateWaypointNumbers(index, route.size());
         map.invalidate();
         Toast.makeText(this, "已刪除航點", Toast.LENGTH_SHORT).show();
     }
 
+    // 刪除指向某航點的箭頭（箭頭以終點的 UUID 命名）
+    private void removeIncomingArrows(String uuid) {
+        for (int i = 1; i <= ARROWS_PER_LINE; i++) {
+            Marker arrowMarker = arrowsDict.remove(uuid + "_" + i);
+            if (arrowMarker != null) {
+                markersFolder.remove(arrowMarker);
+            }
+        }
+    }
+
+    private void commitRouteEdit() {
+        routeHistory.push(route);
+        updateHistoryButtons();
+    }
+
+    private void updateHistoryButtons() {
+        btn_undo.setEnabled(routeHistory.canUndo());
+        btn_redo.setEnabled(routeHistory.canRedo());
+    }
+
+    private void undoRouteEdit() {
+        if (!routeHistory.canUndo()) return;
+        applyRouteState(routeHistory.undo());
+    }
+
+    private void redoRouteEdit() {
+        if (!routeHistory.canRedo()) return;
+        applyRouteState(routeHistory.redo());
+    }
+
+    /**
+     * 切換到歷史中的另一個版本。只處理兩版本之間不同的區段：
+     * 沿用既有的標記物件，重建受影響航段的箭頭，路線只替換變動區段的座標，
+     * 並只重繪編號改變的標記。
+     */
+    private void applyRouteState(PersistentVector<Waypoint> target) {
+        PersistentVector<Waypoint> previous = route;
+        RouteHistory.Diff diff = RouteHistory.Diff.between(previous, target);
+        route = target;
+        updateHistoryButtons();
+        if (diff.removed == 0 && diff.inserted == 0) return;
+
+        boolean sameIds = diff.removed == diff.inserted;
+        for (int i = 0; sameIds && i < diff.removed; i++) {
+            sameIds = previous.get(diff.start + i).id.equals(target.get(diff.start + i).id);
+        }
+
+        if (sameIds) {
+            // 只有位置改變，直接移動標記
+            for (int i = diff.start; i < diff.start + diff.inserted; i++) {
+                Waypoint waypoint = target.get(i);
+                Marker marker = markersDict.get(waypoint.id);
+                marker.setPosition(waypoint.toGeoPoint());
+                elevationProfile.moveWaypoint(i, marker.getPosition());
+                missionSync.recordMove(waypoint.id, marker.getPosition());
+            }
+        } else {
+            // 先移除舊區段，再插入新區段；仍存在的航點沿用原本的標記
+            HashMap<String, Marker> detached = new HashMap<>();
+            for (int i = diff.start + diff.removed - 1; i >= diff.start; i--) {
+                String uuid = previous.get(i).id;
+                detached.put(uuid, markersDict.remove(uuid));
+                removeIncomingArrows(uuid);
+                elevationProfile.removeWaypoint(i);
+                missionSync.recordDelete(uuid);
+            }
+            for (int i = diff.start; i < diff.start + diff.inserted; i++) {
+                Waypoint waypoint = target.get(i);
+                GeoPoint point = waypoint.toGeoPoint();
+                Marker marker = detached.remove(waypoint.id);
+                if (marker == null) {
+                    marker = createWaypointMarker(waypoint.id, point, i + 1);
+                    markersFolder.add(marker);
+                } else {
+                    marker.setPosition(point);
+                }
+                markersDict.put(waypoint.id, marker);
+                elevationProfile.insertWaypoint(i, point);
+                missionSync.recordInsert(waypoint.id, i == 0 ? null : target.get(i - 1).id, point);
+            }
+            for (Marker marker : detached.values()) {
+                markersFolder.remove(marker);
+            }
+
+            // 新插入的項目在 LinkedHashMap 的尾端，把變動區段之後的航點移到它們後面；
+            // 前段順序不變，不需要搬動
+            for (int i = diff.start + diff.inserted; i < target.size(); i++) {
+                String uuid = target.get(i).id;
+                markersDict.put(uuid, markersDict.remove(uuid));
+            }
+        }
+
+        // 重建兩端與變動區段相接的箭頭
+        if (diff.start == 0 && !target.isEmpty()) {
+            removeIncomingArrows(target.get(0).id);
+        }
+        int lastSegment = Math.min(target.size() - 1, diff.start + diff.inserted);
+        for (int i = Math.max(1, diff.start); i <= lastSegment; i++) {
+            updatePolylineArrowMarkers(markersDict.get(target.get(i - 1).id), markersDict.get(target.get(i).id));
+        }
+
+        // 兩條路線共用同一份點列，只替換變動區段（沿用標記的座標物件）
+        List<GeoPoint> points = new ArrayList<>(pathInnerPolyline.getActualPoints());
+        List<GeoPoint> segment = points.subList(diff.start, diff.start + diff.removed);
+        segment.clear();
+        for (int i = diff.start; i < diff.start + diff.inserted; i++) {
+            segment.add(markersDict.get(target.get(i).id).getPosition());
+        }
+        pathInnerPolyline.setPoints(points);
+        pathOutterPolyline.setPoints(points);
+        if (diff.removed != diff.inserted) {
+            updateWaypointNumbers(diff.start, target.size());
+        } else if (!sameIds) {
+            updateWaypointNumbers(diff.start, diff.start + diff.inserted);
+        }
+        map.invalidate();
+    }
+
     private void deleteWaypoint(GeoPoint p) {
         if (markersDict.isEmpty()) {
             return;
@@ -578,12 +737,6 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         return true;
     }
 
-    // 更新所有航點的標題編號
-    private void updateWaypointTitles() {
-        AtomicInteger index = new AtomicInteger(1);
-        markersDict.values().forEach(marker -> marker.setTitle("航點" + (index.getAndIncrement())));
-    }
-
     private void centerOnRoute() {
         if (markersDict.isEmpty()) {
             Toast.makeText(this, "尚未設置航點", Toast.LENGTH_SHORT).show();
@@ -595,29 +748,100 @@ public class MainActivity extends AppCompatActivity implements MapEventsReceiver
         // 如果只有一個航點
         if (points.size() == 1) {
             map.getController().animateTo(points.get(0));
-            map.getController().setZoom(15.0);
+            map.getController().setZoom((double) SINGLE_POINT_ZOOM);
             return;
         }
 
-        // 創建一個邊界框來包含所有航點
-        BoundingBox boundingBox = BoundingBox.fromGeoPoints(points);
-
-        // 計算緯度和經度的跨度
-        double latSpan = boundingBox.getLatNorth() - boundingBox.getLatSouth();
-        double lonSpan = boundingBox.getLonEast() - boundingBox.getLonWest();
-
-        // 添加 10% 的邊距
-        BoundingBox boxWithMargin = new BoundingBox(
-                boundingBox.getLatNorth() + (latSpan * 0.1),  // 北緯 + 邊距
-                boundingBox.getLonEast() + (lonSpan * 0.1),   // 東經 + 邊距
-                boundingBox.getLatSouth() - (latSpan * 0.1),  // 南緯 - 邊距
-                boundingBox.getLonWest() - (lonSpan * 0.1)    // 西經 - 邊距
-        );
+        // 包含所有航點並添加 10% 的邊距
+        BoundingBox boxWithMargin = SnapshotViewport.routeBounds(points);
 
         // 設置地圖邊界並添加動畫效果
         map.zoomToBoundingBox(boxWithMargin, true, 1);  // 1000ms = 1秒動畫
     }
 
+    private void showElevationProfile() {
+        List<ElevationProfile.Leg> legs = elevationProfile.getLegs();
+        if (legs.isEmpty()) {
+            Toast.makeText(this, "至少需要兩個航點", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        ElevationProfileView profileView = new ElevationProfileView(this);
+        profileView.setProfile(elevationProfile);
+
+        // 列出每個航段的最小離地間隙
+        StringBuilder text = new StringBuilder();
+        double altitude = elevationProfile.getFlightAltitude();
+        text.append("飛行高度: ");
+        if (Double.isNaN(altitude)) {
+            text.append("無高程資料"); // 起飛點沒有 DEM 圖塊
+        } else {
+            text.append(String.format(Locale.US, "%.0f m", altitude));
+        }
+        for (int i = 0; i < legs.size(); i++) {
+            double clearance = elevationProfile.getMinClearance(i);
+            text.append('\n').append("航段").append(i + 1).append("→").append(i + 2).append(": ");
+            if (Double.isNaN(clearance)) {
+                text.append("無高程資料");
+            } else {
+                text.append(String.format(Locale.US, "最小間隙 %.0f m", clearance));
+                if (clearance < ElevationProfileView.MIN_CLEARANCE) text.append(" ⚠");
+            }
+        }
+        TextView clearanceText = new TextView(this);
+        clearanceText.setText(text);
+        clearanceText.setPadding(32, 16, 32, 16);
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(profileView, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, 400));
+        layout.addView(clearanceText);
+
+        new AlertDialog.Builder(this)
+                .setTitle("地形剖面")
+                .setView(layout)
+                .setPositiveButton("關閉", null)
+                .show();
+    }
+
+    // 在背景繪製簡報用快照與任務清單縮圖，只使用離線快取的圖塊
+    private void exportMissionSnapshot() {
+        if (markersDict.isEmpty()) {
+            Toast.makeText(this, "尚未設置航點", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        List<ITileSource> overlays = new ArrayList<>();
+        if (switch_nofly.isChecked()) overlays.add(noFlyTileSource);
+        if (switch_power.isChecked()) overlays.add(powerTileSource);
+        List<GeoPoint> points = getWaypointPointList();
+
+        MissionSnapshotRenderer.Request snapshot = new MissionSnapshotRenderer.Request(
+                points, map.getTileProvider().getTileSource(), overlays, SNAPSHOT_WIDTH, SNAPSHOT_HEIGHT);
+        MissionSnapshotRenderer.Request thumbnail = new MissionSnapshotRenderer.Request(
+                points, map.getTileProvider().getTileSource(), overlays, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+        thumbnail.decorationScale = THUMBNAIL_DECORATION_SCALE;
+
+        File dir = getExternalFilesDir("snapshots");
+        String name = "mission_" + System.currentTimeMillis();
+        List<File> files = new ArrayList<>();
+        files.add(new File(dir, name + ".png"));
+        files.add(new File(dir, name + "_thumb.png"));
+
+        List<MissionSnapshotRenderer.Request> requests = new ArrayList<>();
+        requests.add(snapshot);
+        requests.add(thumbnail);
+        snapshotRenderer.renderBatch(requests, files, (result, error) -> {
+            if (isFinishing() || isDestroyed()) return; // 繪製期間畫面已關閉，檔案仍已寫入
+            if (error != null) {
+                Toast.makeText(this, "快照匯出失敗", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "快照已儲存: " + result.get(0).getName(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
     @NonNull
     private List<GeoPoint> getWaypointPointList() {
         return markersDict.values().stream()
@@ -0,0 +1,196 @@
+package com.falconjk.osmdroidtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 航線同步的二進位格式。
+ *
+ * 每個 frame：varint 序號、varint 操作數，接著依序為各操作：
+ *   INSERT: 類型, varint id, varint afterId, zig-zag 差值 lat, lon（相對於前一個航點）
+ *   MOVE:   類型, varint id, zig-zag 差值 lat, lon（相對於該航點上次送出的位置）
+ *   DELETE: 類型, varint id
+ *   RESET:  類型（清空航線，之後的 INSERT 重建完整狀態）
+ * 差值依賴雙方一致的 MissionState，因此 frame 必須依序套用且只套用一次。
+ * 以 RESET 開頭的快照 frame 不依賴對方原有的狀態。
+ *
+ * 連線時客戶端先送出 varint 工作階段 ID，地面站回覆它記錄的工作階段 ID
+ * 與該階段已套用的最後序號；之後雙方交換 frame 與確認序號。
+ * 在 socket 上每個 frame 前加上 varint 長度。
+ */
+public final class MissionCodec {
+
+    private MissionCodec() {
+    }
+
+    /**
+     * 將操作編碼成一個 frame，同時套用到 shadow（對方應有的狀態）。
+     */
+    public static byte[] encodeFrame(long seq, List<MissionOp> ops, MissionState shadow) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + ops.size() * 8);
+        writeVarLong(out, seq);
+        writeVarLong(out, ops.size());
+        for (MissionOp op : ops) {
+            out.write(op.type);
+            if (op.type == MissionOp.RESET) {
+                shadow.apply(op);
+                continue;
+            }
+            writeVarLong(out, op.id);
+            int[] base;
+            switch (op.type) {
+                case MissionOp.INSERT:
+                    writeVarLong(out, op.afterId);
+                    base = shadow.getReferencePosition(op.afterId);
+                    break;
+                case MissionOp.MOVE:
+                    // 對方沒有這個航點時仍寫出差值（以 (0, 0) 為基準），解碼端才能讀完整個 frame
+                    base = shadow.getPosition(op.id);
+                    if (base == null) base = new int[2];
+                    break;
+                default:
+                    shadow.apply(op);
+                    continue;
+            }
+            writeVarLong(out, zigZag(op.lat - base[0]));
+            writeVarLong(out, zigZag(op.lon - base[1]));
+            shadow.apply(op);
+        }
+        return out.toByteArray();
+    }
+
+    public static long readSeq(byte[] frame) {
+        return readVarLong(ByteBuffer.wrap(frame));
+    }
+
+    // 是否為以 RESET 開頭的完整快照
+    public static boolean isSnapshot(byte[] frame) {
+        ByteBuffer in = ByteBuffer.wrap(frame);
+        readVarLong(in);
+        return readVarLong(in) > 0 && in.get() == MissionOp.RESET;
+    }
+
+    /**
+     * 解碼並套用 frame 中的操作，回傳序號。
+     */
+    public static long applyFrame(byte[] frame, MissionState state) {
+        ByteBuffer in = ByteBuffer.wrap(frame);
+        long seq = readVarLong(in);
+        long count = readVarLong(in);
+        for (long i = 0; i < count; i++) {
+            int type = in.get();
+            if (type == MissionOp.RESET) {
+                state.apply(MissionOp.reset());
+                continue;
+            }
+            int id = (int) readVarLong(in);
+            switch (type) {
+                case MissionOp.INSERT: {
+                    int afterId = (int) readVarLong(in);
+                    int[] base = state.getReferencePosition(afterId);
+                    int lat = base[0] + (int) unZigZag(readVarLong(in));
+                    int lon = base[1] + (int) unZigZag(readVarLong(in));
+                    state.apply(MissionOp.insert(id, afterId, lat, lon));
+                    break;
+                }
+                case MissionOp.MOVE: {
+                    int[] base = state.getPosition(id);
+                    int lat = (int) unZigZag(readVarLong(in));
+                    int lon = (int) unZigZag(readVarLong(in));
+                    if (base != null) {
+                        state.apply(MissionOp.move(id, base[0] + lat, base[1] + lon));
+                    }
+                    break;
+                }
+                case MissionOp.DELETE:
+                    state.apply(MissionOp.delete(id));
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的操作類型: " + type);
+            }
+        }
+        return seq;
+    }
+
+    public static void writeFrame(OutputStream out, byte[] frame) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(5);
+        writeVarLong(header, frame.length);
+        header.writeTo(out);
+        out.write(frame);
+    }
+
+    // 加上長度前綴後在線路上的位元組數
+    public static int framedSize(byte[] frame) {
+        return varLongSize(frame.length) + frame.length;
+    }
+
+    public static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static byte[] readFrame(InputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        byte[] frame = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(frame, read, length - read);
+            if (n < 0) throw new EOFException();
+            read += n;
+        }
+        return frame;
+    }
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // 直接寫到 socket 的單一 varint，例如握手與確認序號
+    public static void writeVarLong(OutputStream out, long value) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(10);
+        writeVarLong(buffer, value);
+        buffer.writeTo(out);
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("varint 過長");
+    }
+
+    public static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("varint 過長");
+    }
+}
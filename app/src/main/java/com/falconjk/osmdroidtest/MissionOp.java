@@ -0,0 +1,57 @@
+package com.falconjk.osmdroidtest;
+
+/**
+ * 航線的一筆異動：新增、移動、刪除或清空，以穩定的整數 ID 指定航點。
+ * 座標以 1e-7 度的定點整數保存（約 1 公分精度）。
+ */
+public final class MissionOp {
+    public static final int INSERT = 0;
+    public static final int MOVE = 1;
+    public static final int DELETE = 2;
+    public static final int RESET = 3; // 清空航線，只出現在完整快照 frame 的開頭
+
+    public static final double FIXED_POINT_SCALE = 1e7;
+
+    public final int type;
+    public final int id;
+    public final int afterId; // 只用於 INSERT，0 表示插在最前面
+    public final int lat;
+    public final int lon;
+
+    private MissionOp(int type, int id, int afterId, int lat, int lon) {
+        this.type = type;
+        this.id = id;
+        this.afterId = afterId;
+        this.lat = lat;
+        this.lon = lon;
+    }
+
+    public static MissionOp insert(int id, int afterId, int lat, int lon) {
+        return new MissionOp(INSERT, id, afterId, lat, lon);
+    }
+
+    public static MissionOp move(int id, int lat, int lon) {
+        return new MissionOp(MOVE, id, 0, lat, lon);
+    }
+
+    public static MissionOp delete(int id) {
+        return new MissionOp(DELETE, id, 0, 0, 0);
+    }
+
+    public static MissionOp reset() {
+        return new MissionOp(RESET, 0, 0, 0, 0);
+    }
+
+    // 保留類型與插入位置，只換座標
+    MissionOp withPosition(int lat, int lon) {
+        return new MissionOp(type, id, afterId, lat, lon);
+    }
+
+    public static int toFixed(double degrees) {
+        return (int) Math.round(degrees * FIXED_POINT_SCALE);
+    }
+
+    public static double fromFixed(int fixed) {
+        return fixed / FIXED_POINT_SCALE;
+    }
+}
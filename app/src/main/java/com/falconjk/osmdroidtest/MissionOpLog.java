@@ -0,0 +1,79 @@
+package com.falconjk.osmdroidtest;
+
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 記錄尚未送出的航線異動，並在批次視窗內合併：
+ * 同一航點的連續移動只保留最後位置，新增後的移動直接改寫新增的座標，
+ * 尚未送出就被刪除的航點連同其操作一起取消。
+ *
+ * 航點在畫面上以 UUID 識別，這裡換成遞增的整數 ID 以縮小封包。
+ * 航點編號（第幾個）由順序隱含，不需要另外傳送。
+ */
+public class MissionOpLog {
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private final List<MissionOp> pending = new ArrayList<>();
+    private int nextId = 1;
+
+    public synchronized void recordInsert(String uuid, String afterUuid, GeoPoint point) {
+        int id = nextId++;
+        ids.put(uuid, id);
+        Integer afterId = afterUuid == null ? null : ids.get(afterUuid);
+        pending.add(MissionOp.insert(id, afterId == null ? 0 : afterId,
+                MissionOp.toFixed(point.getLatitude()), MissionOp.toFixed(point.getLongitude())));
+    }
+
+    public synchronized void recordMove(String uuid, GeoPoint point) {
+        Integer id = ids.get(uuid);
+        if (id == null) return;
+        int lat = MissionOp.toFixed(point.getLatitude());
+        int lon = MissionOp.toFixed(point.getLongitude());
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            MissionOp op = pending.get(i);
+            if (op.id != id) continue;
+            if (op.type == MissionOp.INSERT || op.type == MissionOp.MOVE) {
+                pending.set(i, op.withPosition(lat, lon));
+                return;
+            }
+            break;
+        }
+        pending.add(MissionOp.move(id, lat, lon));
+    }
+
+    public synchronized void recordDelete(String uuid) {
+        Integer id = ids.remove(uuid);
+        if (id == null) return;
+
+        boolean insertedInBatch = false;
+        boolean referenced = false;
+        for (MissionOp op : pending) {
+            if (op.id == id && op.type == MissionOp.INSERT) insertedInBatch = true;
+            if (op.type == MissionOp.INSERT && op.afterId == id) referenced = true;
+        }
+        // 移動一定會被刪除覆蓋；新增只有在沒被其他新增當作插入位置時才能一起取消
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            MissionOp op = pending.get(i);
+            if (op.id == id && (op.type == MissionOp.MOVE || !referenced)) {
+                pending.remove(i);
+            }
+        }
+        if (!insertedInBatch || referenced) {
+            pending.add(MissionOp.delete(id));
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    // 取出目前累積的操作，清空待送列表
+    public synchronized List<MissionOp> drain() {
+        List<MissionOp> ops = new ArrayList<>(pending);
+        pending.clear();
+        return ops;
+    }
+}
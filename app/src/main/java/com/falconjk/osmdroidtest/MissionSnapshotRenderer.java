@@ -0,0 +1,381 @@
+package com.falconjk.osmdroidtest;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.core.content.ContextCompat;
+
+import org.osmdroid.tileprovider.modules.DatabaseFileArchive;
+import org.osmdroid.tileprovider.modules.SqlTileWriter;
+import org.osmdroid.tileprovider.tilesource.ITileSource;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 在背景執行緒把任務航線畫成 PNG，用於簡報與任務清單縮圖，不依賴 MapView。
+ *
+ * 只讀取離線快取中的圖塊，不會連網。底圖缺少某個縮放層級的圖塊時
+ * （例如縮圖的層級比瀏覽時低），改用相鄰層級的圖塊縮放代替，都沒有時留底色。
+ * 解碼後的圖塊放在 LRU 中，批次繪製多張縮圖時共用。
+ * 繪製用的位圖每種尺寸保留一張（快照與縮圖交替繪製時不必重新配置），
+ * 所有狀態都只在工作執行緒上存取。
+ */
+public class MissionSnapshotRenderer {
+
+    private static final String TAG = "MissionSnapshot";
+    private static final int TILE_CACHE_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_TARGET_SIZES = 2; // 一般是快照與縮圖兩種尺寸
+    private static final int MAX_PARENT_ZOOM_DELTA = 4; // 放大超過 16 倍已看不出內容
+    private static final int MAX_CHILD_ZOOM_DELTA = 2; // 每張圖塊最多讀 16 張子圖塊
+    static final int BACKGROUND_COLOR = Color.rgb(221, 221, 221);
+
+    /**
+     * 從快取讀取一張圖塊的原始位元組（PNG/JPEG），沒有時回傳 null。
+     */
+    public interface TileLoader {
+        byte[] loadTile(String sourceName, long mapTileIndex);
+    }
+
+    /**
+     * 讀取 osmdroid 的離線圖塊資料庫（與 MapView 下載時寫入的是同一份）。
+     */
+    public static class OfflineTileLoader implements TileLoader {
+        private final SqlTileWriter cache = new SqlTileWriter();
+
+        @Override
+        public byte[] loadTile(String sourceName, long mapTileIndex) {
+            try (Cursor cursor = cache.getTileCursor(
+                    SqlTileWriter.getPrimaryKeyParameters(mapTileIndex, sourceName),
+                    new String[]{DatabaseFileArchive.COLUMN_TILE})) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    return cursor.getBlob(0);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "讀取離線圖塊失敗 " + sourceName + " " + MapTileIndex.toString(mapTileIndex), e);
+            }
+            return null;
+        }
+    }
+
+    public interface Callback {
+        // 在主執行緒上呼叫，失敗時 error 不為 null
+        void onComplete(List<File> files, Exception error);
+    }
+
+    /**
+     * 航點標記與方向箭頭的畫法。預設與地圖上的外觀相同；
+     * 標準圖測試換成純色方塊，避免字型與向量圖的點陣化因裝置而異。
+     */
+    interface Decorations {
+        // 原點為航點位置（標記底部中央），size 為標記的寬高
+        void drawWaypoint(Canvas canvas, int number, float size);
+
+        // 原點為箭頭中心，箭頭朝上
+        void drawArrow(Canvas canvas, float scale);
+    }
+
+    // 與地圖上相同的編號標記與箭頭圖示
+    private static final class MarkerDecorations implements Decorations {
+        private final Context context;
+        private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final RectF rect = new RectF();
+        private Drawable arrowDrawable;
+        private NumberedMarkerView markerView; // 所有航點共用一個標記與一張暫存位圖，不隨航點數增加記憶體
+        private Bitmap markerBitmap;
+        private Canvas markerCanvas;
+
+        MarkerDecorations(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public void drawWaypoint(Canvas canvas, int number, float size) {
+            if (markerView == null) {
+                markerView = NumberedMarkerView.createDetached(context);
+                markerBitmap = Bitmap.createBitmap(NumberedMarkerView.MARKER_SIZE, NumberedMarkerView.MARKER_SIZE,
+                        Bitmap.Config.ARGB_8888);
+                markerCanvas = new Canvas(markerBitmap);
+            }
+            markerBitmap.eraseColor(Color.TRANSPARENT);
+            markerView.setNumber(String.valueOf(number));
+            markerView.draw(markerCanvas);
+            rect.set(-size / 2, -size, size / 2, 0);
+            canvas.drawBitmap(markerBitmap, null, rect, bitmapPaint);
+        }
+
+        @Override
+        public void drawArrow(Canvas canvas, float scale) {
+            if (arrowDrawable == null) {
+                arrowDrawable = ContextCompat.getDrawable(context, R.drawable.baseline_keyboard_arrow_up_24);
+            }
+            int width = Math.round(arrowDrawable.getIntrinsicWidth() * scale);
+            int height = Math.round(arrowDrawable.getIntrinsicHeight() * scale);
+            arrowDrawable.setBounds(-width / 2, -height / 2, width - width / 2, height - height / 2);
+            arrowDrawable.draw(canvas);
+        }
+    }
+
+    public static final class Request {
+        public final List<GeoPoint> waypoints;
+        public final ITileSource baseSource;
+        public final List<ITileSource> overlays; // 依序疊在底圖上，例如禁航區與電力線
+        public final int width;
+        public final int height;
+        public float decorationScale = 1f; // 縮圖時縮小線寬、箭頭與航點標記
+        public boolean drawRoute = true;
+
+        public Request(List<GeoPoint> waypoints, ITileSource baseSource, List<ITileSource> overlays,
+                       int width, int height) {
+            this.waypoints = new ArrayList<>(waypoints);
+            this.baseSource = baseSource;
+            this.overlays = overlays == null ? Collections.<ITileSource>emptyList() : new ArrayList<>(overlays);
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final TileLoader tileLoader;
+    private final Decorations decorations;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Bitmap> tileCache = new LruCache<String, Bitmap>(TILE_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    private final Paint outerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint innerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Path path = new Path();
+    private final RectF rect = new RectF();
+    private final Rect srcRect = new Rect();
+    private final LinkedHashMap<Long, Bitmap> targets = new LinkedHashMap<Long, Bitmap>(MAX_TARGET_SIZES + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Bitmap> eldest) {
+            return size() > MAX_TARGET_SIZES;
+        }
+    };
+    private final Canvas canvas = new Canvas();
+
+    public MissionSnapshotRenderer(Context context, TileLoader tileLoader) {
+        this(context, tileLoader, new MarkerDecorations(context.getApplicationContext()));
+    }
+
+    MissionSnapshotRenderer(Context context, TileLoader tileLoader, Decorations decorations) {
+        this.tileLoader = tileLoader;
+        this.decorations = decorations;
+        // 與地圖上的航線相同的顏色與線寬
+        outerPaint.setStyle(Paint.Style.STROKE);
+        outerPaint.setColor(context.getColor(R.color.color_bright_blue));
+        innerPaint.setStyle(Paint.Style.STROKE);
+        innerPaint.setColor(context.getColor(R.color.route_inner_color));
+    }
+
+    public void render(Request request, File file, Callback callback) {
+        renderBatch(Collections.singletonList(request), Collections.singletonList(file), callback);
+    }
+
+    // 同一個工作內依序繪製，共用已解碼的圖塊
+    public void renderBatch(List<Request> requests, List<File> files, Callback callback) {
+        final List<Request> requestList = new ArrayList<>(requests);
+        final List<File> fileList = new ArrayList<>(files);
+        executor.execute(() -> {
+            Exception error = null;
+            try {
+                for (int i = 0; i < requestList.size(); i++) {
+                    try (OutputStream out = new FileOutputStream(fileList.get(i))) {
+                        renderToBitmap(requestList.get(i)).compress(Bitmap.CompressFormat.PNG, 100, out);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "快照繪製失敗", e);
+                error = e;
+            }
+            final Exception result = error;
+            if (callback != null) {
+                mainHandler.post(() -> callback.onComplete(fileList, result));
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 畫出一張快照。回傳的位圖會在下一次繪製同尺寸時被重複使用，必須在工作執行緒上呼叫。
+     */
+    Bitmap renderToBitmap(Request request) {
+        long key = ((long) request.width << 32) | request.height;
+        Bitmap bitmap = targets.get(key);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(request.width, request.height, Bitmap.Config.ARGB_8888);
+            targets.put(key, bitmap);
+        }
+        canvas.setBitmap(bitmap);
+        bitmap.eraseColor(BACKGROUND_COLOR);
+        if (request.waypoints.isEmpty()) return bitmap;
+
+        ITileSource base = request.baseSource;
+        SnapshotViewport viewport = SnapshotViewport.fit(
+                SnapshotViewport.routeExtent(request.waypoints),
+                request.width, request.height, base.getTileSizePixels(),
+                base.getMinimumZoomLevel(), base.getMaximumZoomLevel(), MainActivity.SINGLE_POINT_ZOOM);
+
+        drawTiles(viewport, base, true);
+        // 疊加圖層在沒有資料的區域本來就沒有圖塊，不找其他層級
+        for (ITileSource overlay : request.overlays) {
+            drawTiles(viewport, overlay, false);
+        }
+        if (request.drawRoute) {
+            drawRoute(viewport, request.waypoints, request.decorationScale);
+        }
+        return bitmap;
+    }
+
+    private void drawTiles(SnapshotViewport viewport, ITileSource source, boolean fallback) {
+        int tileSize = viewport.tileSize;
+        int zoom = Math.max(source.getMinimumZoomLevel(), Math.min(source.getMaximumZoomLevel(), viewport.zoom));
+        if (zoom != viewport.zoom) return; // 疊加圖層沒有這個縮放層級的圖塊
+
+        int tiles = 1 << zoom;
+        long firstX = Math.floorDiv(viewport.originX, (long) tileSize);
+        long lastX = Math.floorDiv(viewport.originX + viewport.width - 1, (long) tileSize);
+        long firstY = Math.max(0, Math.floorDiv(viewport.originY, (long) tileSize));
+        long lastY = Math.min(tiles - 1, Math.floorDiv(viewport.originY + viewport.height - 1, (long) tileSize));
+        for (long ty = firstY; ty <= lastY; ty++) {
+            for (long tx = firstX; tx <= lastX; tx++) {
+                int x = (int) Math.floorMod(tx, (long) tiles); // 跨越換日線時繞回
+                float left = tx * tileSize - viewport.originX;
+                float top = ty * tileSize - viewport.originY;
+                Bitmap tile = loadTile(source, zoom, x, (int) ty, 1);
+                if (tile == null) {
+                    if (fallback) {
+                        // 先放大較低層級的圖塊鋪滿，再以較高層級縮小的圖塊補上細節
+                        drawParentTile(source, zoom, x, (int) ty, left, top, tileSize);
+                        drawChildTiles(source, zoom, x, (int) ty, left, top, tileSize);
+                    }
+                } else if (tile.getWidth() == tileSize && tile.getHeight() == tileSize) {
+                    canvas.drawBitmap(tile, left, top, null);
+                } else {
+                    rect.set(left, top, left + tileSize, top + tileSize);
+                    canvas.drawBitmap(tile, null, rect, bitmapPaint);
+                }
+            }
+        }
+    }
+
+    private void drawParentTile(ITileSource source, int zoom, int x, int y, float left, float top, int tileSize) {
+        for (int delta = 1; delta <= MAX_PARENT_ZOOM_DELTA && zoom - delta >= source.getMinimumZoomLevel(); delta++) {
+            Bitmap parent = loadTile(source, zoom - delta, x >> delta, y >> delta, 1);
+            if (parent == null) continue;
+            int span = parent.getWidth() >> delta;
+            if (span == 0) return;
+            int mask = (1 << delta) - 1;
+            srcRect.set((x & mask) * span, (y & mask) * span, ((x & mask) + 1) * span, ((y & mask) + 1) * span);
+            rect.set(left, top, left + tileSize, top + tileSize);
+            canvas.drawBitmap(parent, srcRect, rect, bitmapPaint);
+            return;
+        }
+    }
+
+    // 取第一個有任何子圖塊的層級；子圖塊解碼時就縮小，佔用的記憶體與一張圖塊相同
+    private void drawChildTiles(ITileSource source, int zoom, int x, int y, float left, float top, int tileSize) {
+        for (int delta = 1; delta <= MAX_CHILD_ZOOM_DELTA && zoom + delta <= source.getMaximumZoomLevel(); delta++) {
+            int count = 1 << delta;
+            float size = (float) tileSize / count;
+            boolean found = false;
+            for (int j = 0; j < count; j++) {
+                for (int i = 0; i < count; i++) {
+                    Bitmap child = loadTile(source, zoom + delta, (x << delta) + i, (y << delta) + j, count);
+                    if (child == null) continue;
+                    rect.set(left + i * size, top + j * size, left + (i + 1) * size, top + (j + 1) * size);
+                    canvas.drawBitmap(child, null, rect, bitmapPaint);
+                    found = true;
+                }
+            }
+            if (found) return;
+        }
+    }
+
+    private Bitmap loadTile(ITileSource source, int zoom, int x, int y, int sampleSize) {
+        long index = MapTileIndex.getTileIndex(zoom, x, y);
+        String key = source.name() + "/" + index + (sampleSize > 1 ? "@" + sampleSize : "");
+        Bitmap tile = tileCache.get(key);
+        if (tile != null) return tile;
+        byte[] data = tileLoader.loadTile(source.name(), index);
+        if (data == null) return null;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        tile = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (tile != null) tileCache.put(key, tile);
+        return tile;
+    }
+
+    private void drawRoute(SnapshotViewport viewport, List<GeoPoint> waypoints, float scale) {
+        int count = waypoints.size();
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        path.reset();
+        for (int i = 0; i < count; i++) {
+            xs[i] = viewport.toPixelX(waypoints.get(i).getLongitude());
+            ys[i] = viewport.toPixelY(waypoints.get(i).getLatitude());
+            if (i == 0) path.moveTo(xs[i], ys[i]);
+            else path.lineTo(xs[i], ys[i]);
+        }
+        outerPaint.setStrokeWidth(22f * scale);
+        innerPaint.setStrokeWidth(13f * scale);
+        canvas.drawPath(path, outerPaint);
+        canvas.drawPath(path, innerPaint);
+
+        // 箭頭：與 updatePolylineArrowMarkers 相同的位置，沿航段方向旋轉
+        double segmentRatio = 1.0 / (MainActivity.ARROWS_PER_LINE + 1);
+        for (int i = 1; i < count; i++) {
+            float angle = (float) Math.toDegrees(Math.atan2(xs[i] - xs[i - 1], ys[i - 1] - ys[i]));
+            for (int a = 1; a <= MainActivity.ARROWS_PER_LINE; a++) {
+                double ratio = segmentRatio * a;
+                canvas.save();
+                canvas.translate((float) (xs[i - 1] + (xs[i] - xs[i - 1]) * ratio),
+                        (float) (ys[i - 1] + (ys[i] - ys[i - 1]) * ratio));
+                canvas.rotate(angle);
+                decorations.drawArrow(canvas, scale);
+                canvas.restore();
+            }
+        }
+
+        // 航點：錨點在標記底部中央
+        float size = NumberedMarkerView.MARKER_SIZE * scale;
+        for (int i = 0; i < count; i++) {
+            canvas.save();
+            canvas.translate(xs[i], ys[i]);
+            decorations.drawWaypoint(canvas, i + 1, size);
+            canvas.restore();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.falconjk.osmdroidtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 依序排列的航點與其定點座標，航點編號即為在列表中的位置。
+ * 傳送端用它記錄「對方應有的狀態」，接收端用它重建航線。
+ */
+public class MissionState {
+    private final List<Integer> order = new ArrayList<>();
+    private final HashMap<Integer, int[]> positions = new HashMap<>();
+
+    public synchronized void apply(MissionOp op) {
+        switch (op.type) {
+            case MissionOp.INSERT: {
+                int index = op.afterId == 0 ? 0 : order.indexOf(op.afterId) + 1;
+                order.add(index, op.id);
+                positions.put(op.id, new int[]{op.lat, op.lon});
+                break;
+            }
+            case MissionOp.MOVE: {
+                int[] position = positions.get(op.id);
+                if (position != null) {
+                    position[0] = op.lat;
+                    position[1] = op.lon;
+                }
+                break;
+            }
+            case MissionOp.DELETE:
+                if (positions.remove(op.id) != null) {
+                    order.remove(Integer.valueOf(op.id));
+                }
+                break;
+            case MissionOp.RESET:
+                order.clear();
+                positions.clear();
+                break;
+            default:
+                throw new IllegalArgumentException("未知的操作類型: " + op.type);
+        }
+    }
+
+    // 回傳 {lat, lon}，不存在時為 null
+    public synchronized int[] getPosition(int id) {
+        int[] position = positions.get(id);
+        return position == null ? null : position.clone();
+    }
+
+    // 插入位置前一個航點的座標，作為差值編碼的基準；插在最前面時以 (0, 0) 為基準
+    synchronized int[] getReferencePosition(int afterId) {
+        int[] position = afterId == 0 ? null : positions.get(afterId);
+        return position == null ? new int[2] : position.clone();
+    }
+
+    // 從空白重建目前狀態的操作：RESET 後依序新增每個航點
+    public synchronized List<MissionOp> toSnapshot() {
+        List<MissionOp> ops = new ArrayList<>(order.size() + 1);
+        ops.add(MissionOp.reset());
+        int afterId = 0;
+        for (Integer id : order) {
+            int[] position = positions.get(id);
+            ops.add(MissionOp.insert(id, afterId, position[0], position[1]));
+            afterId = id;
+        }
+        return ops;
+    }
+
+    public synchronized List<Integer> getOrder() {
+        return new ArrayList<>(order);
+    }
+
+    public synchronized int size() {
+        return order.size();
+    }
+
+    @Override
+    public synchronized boolean equals(Object o) {
+        if (!(o instanceof MissionState)) return false;
+        MissionState other = (MissionState) o;
+        List<Integer> otherOrder = other.getOrder();
+        if (!order.equals(otherOrder)) return false;
+        for (Integer id : order) {
+            if (!Arrays.equals(positions.get(id), other.getPosition(id))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        return order.hashCode();
+    }
+}
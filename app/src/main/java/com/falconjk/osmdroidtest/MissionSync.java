@@ -0,0 +1,282 @@
+package com.falconjk.osmdroidtest;
+
+import android.util.Log;
+
+import org.osmdroid.util.GeoPoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 將航線異動以差值編碼同步到地面站。
+ *
+ * 異動先在 MissionOpLog 累積一個批次視窗，再編成一個 frame 送出；
+ * 地面站每套用一個 frame 就回傳其序號作為確認。
+ * 斷線期間異動留在 MissionOpLog 繼續合併，重連後只送一個 frame。
+ * 連線時先交換工作階段 ID：地面站記錄的是同一個工作階段時，
+ * 依它已套用的最後序號確認並依序重送其餘 frame，斷線重連後不會遺漏也不會重複套用；
+ * 不同時（程式重啟、畫面重建或地面站重置），捨棄未確認的 frame，
+ * 改送一個完整快照讓地面站清空後重建，序號與航點 ID 重新開始也不會被誤認為已套用。
+ *
+ * 連不上時以指數退避重試；尚未 start（例如未設定地面站）時不記錄任何異動。
+ */
+public class MissionSync {
+
+    private static final String TAG = "MissionSync";
+    private static final int CONNECT_TIMEOUT = 3000;
+    private static final int HANDSHAKE_TIMEOUT = 3000; // 接受連線卻不回覆的地面站不能卡住工作執行緒
+    private static final long RECONNECT_DELAY = 2000;
+    private static final long MAX_RECONNECT_DELAY = 60000;
+
+    private final String host;
+    private final int port;
+    private final long batchWindowMs;
+    private final MissionOpLog opLog = new MissionOpLog();
+    private final MissionState shadow = new MissionState(); // 地面站套用所有 frame 後應有的狀態
+    private final ArrayDeque<byte[]> unacked = new ArrayDeque<>();
+    private final long sessionId = newSessionId();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private long nextSeq = 1;
+    private long bytesSent = 0;
+    private boolean flushScheduled = false;
+    private boolean running = false;
+    private long reconnectDelay = RECONNECT_DELAY;
+    private Socket socket;
+    private OutputStream output;
+
+    public MissionSync(String host, int port, long batchWindowMs) {
+        this.host = host;
+        this.port = port;
+        this.batchWindowMs = batchWindowMs;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        executor.execute(this::connect);
+    }
+
+    public void stop() {
+        synchronized (this) {
+            running = false;
+        }
+        executor.execute(this::closeSocket);
+        executor.shutdown();
+    }
+
+    public void recordInsert(String uuid, String afterUuid, GeoPoint point) {
+        if (!isRunning()) return;
+        opLog.recordInsert(uuid, afterUuid, point);
+        scheduleFlush();
+    }
+
+    public void recordMove(String uuid, GeoPoint point) {
+        if (!isRunning()) return;
+        opLog.recordMove(uuid, point);
+        scheduleFlush();
+    }
+
+    public void recordDelete(String uuid) {
+        if (!isRunning()) return;
+        opLog.recordDelete(uuid);
+        scheduleFlush();
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    public synchronized int getUnackedCount() {
+        return unacked.size();
+    }
+
+    // 所有異動都已送出並被確認
+    public synchronized boolean isSynced() {
+        return unacked.isEmpty() && opLog.isEmpty() && !flushScheduled;
+    }
+
+    public boolean awaitSynced(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            while (!isSynced()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    MissionState getShadowState() {
+        return shadow;
+    }
+
+    private synchronized void scheduleFlush() {
+        if (flushScheduled || executor.isShutdown()) return;
+        flushScheduled = true;
+        executor.schedule(this::flush, batchWindowMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        byte[] frame;
+        synchronized (this) {
+            flushScheduled = false;
+            if (socket == null) {
+                // 斷線中先不編碼，讓拖動繼續在 opLog 合併，握手後再送
+                notifyAll();
+                return;
+            }
+            List<MissionOp> ops = opLog.drain();
+            if (ops.isEmpty()) {
+                notifyAll();
+                return;
+            }
+            frame = MissionCodec.encodeFrame(nextSeq++, ops, shadow);
+            unacked.addLast(frame);
+        }
+        send(frame);
+    }
+
+    private void connect() {
+        synchronized (this) {
+            if (!running || socket != null) return;
+        }
+        Socket s = new Socket();
+        try {
+            s.setTcpNoDelay(true);
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            s.setSoTimeout(HANDSHAKE_TIMEOUT);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            // 握手：送出工作階段 ID，地面站回覆它的工作階段 ID 與已套用的最後序號
+            MissionCodec.writeVarLong(out, sessionId);
+            out.flush();
+            long stationSession = MissionCodec.readVarLong(in);
+            long applied = MissionCodec.readVarLong(in);
+            s.setSoTimeout(0); // 確認序號由獨立執行緒等待，不設逾時
+            byte[][] resend;
+            synchronized (this) {
+                socket = s;
+                output = out;
+                reconnectDelay = RECONNECT_DELAY;
+                if (stationSession == sessionId) {
+                    acknowledge(applied);
+                } else {
+                    // 地面站上的序號屬於別的工作階段，以快照取代所有未確認的 frame
+                    unacked.clear();
+                    unacked.addLast(MissionCodec.encodeFrame(nextSeq++, shadow.toSnapshot(), shadow));
+                }
+                resend = unacked.toArray(new byte[0][]);
+            }
+            for (byte[] frame : resend) {
+                send(frame);
+            }
+            flush(); // 斷線期間累積的異動
+            Thread reader = new Thread(() -> readAcks(s, in), "MissionSync-ack");
+            reader.setDaemon(true);
+            reader.start();
+        } catch (IOException e) {
+            // 地面站不在時會一直重試，只記一行
+            Log.w(TAG, "無法連線到地面站 " + host + ":" + port + ": " + e);
+            handleDisconnect(s);
+        }
+    }
+
+    private void send(byte[] frame) {
+        Socket s;
+        synchronized (this) {
+            s = socket;
+            if (s == null) return; // 尚未連線，重連後會重送
+        }
+        try {
+            MissionCodec.writeFrame(output, frame);
+            output.flush();
+            synchronized (this) {
+                bytesSent += MissionCodec.framedSize(frame);
+            }
+        } catch (IOException e) {
+            handleDisconnect(s);
+        }
+    }
+
+    private void readAcks(Socket s, InputStream in) {
+        try {
+            while (true) {
+                long seq = MissionCodec.readVarLong(in);
+                synchronized (this) {
+                    acknowledge(seq);
+                }
+            }
+        } catch (IOException e) {
+            try {
+                executor.execute(() -> handleDisconnect(s));
+            } catch (RejectedExecutionException ignored) {
+                // 已停止同步
+            }
+        }
+    }
+
+    private void acknowledge(long seq) {
+        while (!unacked.isEmpty() && MissionCodec.readSeq(unacked.peekFirst()) <= seq) {
+            unacked.removeFirst();
+        }
+        notifyAll();
+    }
+
+    // 只處理目前這條連線，舊連線的延遲通知直接忽略
+    private void handleDisconnect(Socket s) {
+        try {
+            if (s != null) s.close();
+        } catch (IOException ignored) {
+        }
+        long delay;
+        synchronized (this) {
+            if (socket != null && socket != s) return;
+            socket = null;
+            output = null;
+            if (!running || executor.isShutdown()) return;
+            delay = reconnectDelay;
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        }
+        executor.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // 非 0，地面站以 0 表示尚未收過任何工作階段
+    private static long newSessionId() {
+        long id;
+        do {
+            id = UUID.randomUUID().getMostSignificantBits();
+        } while (id == 0);
+        return id;
+    }
+
+    private void closeSocket() {
+        Socket s;
+        synchronized (this) {
+            s = socket;
+            socket = null;
+            output = null;
+        }
+        try {
+            if (s != null) s.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.falconjk.osmdroidtest;
 import static java.security.AccessController.getContext;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -39,6 +40,31 @@ public class NumberedMarkerView extends View {
     }
 
 
+    // 將帶數字的標記畫成固定尺寸的位圖
+    public static Bitmap createBitmap(Context context, int number) {
+        NumberedMarkerView markerView = createDetached(context);
+        markerView.setNumber(String.valueOf(number));
+
+        // 使用固定尺寸創建位圖
+        Bitmap bitmap = Bitmap.createBitmap(MARKER_SIZE, MARKER_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        markerView.draw(canvas);
+        return bitmap;
+    }
+
+    // 已完成布局、不屬於任何畫面的標記；可反覆 setNumber 後畫到不同的 canvas
+    public static NumberedMarkerView createDetached(Context context) {
+        NumberedMarkerView markerView = new NumberedMarkerView(context);
+
+        // 強制進行一次布局
+        markerView.measure(
+                MeasureSpec.makeMeasureSpec(MARKER_SIZE, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(MARKER_SIZE, MeasureSpec.EXACTLY)
+        );
+        markerView.layout(0, 0, MARKER_SIZE, MARKER_SIZE);
+        return markerView;
+    }
+
     public void setNumber(String number) {
         this.number = number;
         invalidate();
@@ -0,0 +1,338 @@
+package com.falconjk.osmdroidtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 不可變的分塊向量：葉節點最多保存 BRANCH 個元素，內部節點記錄各子樹的大小。
+ * 每次修改只複製從根到目標葉的路徑（copy-on-write），其餘節點與舊版本共用，
+ * 所以保留一個歷史版本只需要 O(log n) 的額外記憶體。
+ *
+ * 刪除時不做節點合併，只移除變空的節點，樹高仍受插入時的分裂控制。
+ */
+public final class PersistentVector<E> {
+    static final int BRANCH = 32;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Leaf(new Object[0]));
+
+    private final Node root;
+
+    private PersistentVector(Node root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    // 由一般列表一次建好平衡的樹，比逐一插入少複製很多節點
+    public static <E> PersistentVector<E> of(List<E> items) {
+        if (items.isEmpty()) return empty();
+        List<Node> level = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += BRANCH) {
+            level.add(new Leaf(items.subList(i, Math.min(items.size(), i + BRANCH)).toArray()));
+        }
+        while (level.size() > 1) {
+            List<Node> parents = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += BRANCH) {
+                parents.add(new Branch(level.subList(i, Math.min(level.size(), i + BRANCH)).toArray(new Node[0])));
+            }
+            level = parents;
+        }
+        return new PersistentVector<>(level.get(0));
+    }
+
+    public int size() {
+        return root.size();
+    }
+
+    public boolean isEmpty() {
+        return root.size() == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, size());
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int child = branch.childFor(index);
+            index -= branch.offset(child);
+            node = branch.children[child];
+        }
+        return (E) ((Leaf) node).items[index];
+    }
+
+    public PersistentVector<E> set(int index, E item) {
+        checkIndex(index, size());
+        return new PersistentVector<>(root.set(index, item));
+    }
+
+    public PersistentVector<E> add(E item) {
+        return insert(size(), item);
+    }
+
+    public PersistentVector<E> insert(int index, E item) {
+        checkIndex(index, size() + 1);
+        Node[] result = root.insert(index, item);
+        return new PersistentVector<>(result.length == 1 ? result[0] : new Branch(result));
+    }
+
+    public PersistentVector<E> remove(int index) {
+        checkIndex(index, size());
+        Node node = root.remove(index);
+        if (node == null) return empty();
+        // 根只剩一個子節點時降低樹高
+        while (node instanceof Branch && ((Branch) node).children.length == 1) {
+            node = ((Branch) node).children[0];
+        }
+        return new PersistentVector<>(node);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<E> toList() {
+        List<Object> out = new ArrayList<>(size());
+        root.collect(out);
+        return (List<E>) Collections.unmodifiableList(out);
+    }
+
+    /**
+     * 兩個版本開頭相同（同一個物件）的元素數。
+     * 先利用共用的子樹直接跳過，再逐一比較剩下的元素。
+     */
+    public static <E> int commonPrefix(PersistentVector<E> a, PersistentVector<E> b) {
+        int limit = Math.min(a.size(), b.size());
+        int prefix = Math.min(limit, sharedPrefix(a.root, b.root));
+        while (prefix < limit && a.get(prefix) == b.get(prefix)) prefix++;
+        return prefix;
+    }
+
+    // 兩個版本結尾相同的元素數，不超過 limit
+    public static <E> int commonSuffix(PersistentVector<E> a, PersistentVector<E> b, int limit) {
+        int suffix = Math.min(limit, sharedSuffix(a.root, b.root));
+        while (suffix < limit && a.get(a.size() - 1 - suffix) == b.get(b.size() - 1 - suffix)) suffix++;
+        return suffix;
+    }
+
+    /**
+     * 估計 next 相對於 previous 多佔用的位元組數，也就是 next 中沒有被共用的節點大小。
+     * 元素本身不計入。以 64 位元 JVM、壓縮指標估算。
+     */
+    static long estimateAddedBytes(PersistentVector<?> previous, PersistentVector<?> next) {
+        Set<Node> known = Collections.newSetFromMap(new IdentityHashMap<>());
+        previous.root.visit(known, null);
+        long[] bytes = new long[1];
+        next.root.visit(known, bytes);
+        return bytes[0];
+    }
+
+    int height() {
+        int height = 1;
+        for (Node node = root; node instanceof Branch; node = ((Branch) node).children[0]) height++;
+        return height;
+    }
+
+    private static int sharedPrefix(Node x, Node y) {
+        if (x == y) return x.size();
+        if (!(x instanceof Branch) || !(y instanceof Branch)) return 0;
+        Node[] cx = ((Branch) x).children;
+        Node[] cy = ((Branch) y).children;
+        int offset = 0;
+        for (int i = 0; i < cx.length && i < cy.length; i++) {
+            if (cx[i] != cy[i]) return offset + sharedPrefix(cx[i], cy[i]);
+            offset += cx[i].size();
+        }
+        return offset;
+    }
+
+    private static int sharedSuffix(Node x, Node y) {
+        if (x == y) return x.size();
+        if (!(x instanceof Branch) || !(y instanceof Branch)) return 0;
+        Node[] cx = ((Branch) x).children;
+        Node[] cy = ((Branch) y).children;
+        int offset = 0;
+        for (int i = cx.length - 1, j = cy.length - 1; i >= 0 && j >= 0; i--, j--) {
+            if (cx[i] != cy[j]) return offset + sharedSuffix(cx[i], cy[j]);
+            offset += cx[i].size();
+        }
+        return offset;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+
+    private abstract static class Node {
+        abstract int size();
+
+        abstract Node set(int index, Object item);
+
+        // 回傳一個節點，或分裂後的兩個節點
+        abstract Node[] insert(int index, Object item);
+
+        // 節點變空時回傳 null
+        abstract Node remove(int index);
+
+        abstract void collect(List<Object> out);
+
+        abstract long shallowBytes();
+
+        // 走訪尚未見過的節點；bytes 不為 null 時累加其大小
+        void visit(Set<Node> known, long[] bytes) {
+            if (!known.add(this)) return;
+            if (bytes != null) bytes[0] += shallowBytes();
+            if (this instanceof Branch) {
+                for (Node child : ((Branch) this).children) child.visit(known, bytes);
+            }
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final Object[] items;
+
+        Leaf(Object[] items) {
+            this.items = items;
+        }
+
+        @Override
+        int size() {
+            return items.length;
+        }
+
+        @Override
+        Node set(int index, Object item) {
+            Object[] copy = items.clone();
+            copy[index] = item;
+            return new Leaf(copy);
+        }
+
+        @Override
+        Node[] insert(int index, Object item) {
+            Object[] copy = new Object[items.length + 1];
+            System.arraycopy(items, 0, copy, 0, index);
+            copy[index] = item;
+            System.arraycopy(items, index, copy, index + 1, items.length - index);
+            if (copy.length <= BRANCH) return new Node[]{new Leaf(copy)};
+            int half = copy.length / 2;
+            Object[] left = new Object[half];
+            Object[] right = new Object[copy.length - half];
+            System.arraycopy(copy, 0, left, 0, half);
+            System.arraycopy(copy, half, right, 0, right.length);
+            return new Node[]{new Leaf(left), new Leaf(right)};
+        }
+
+        @Override
+        Node remove(int index) {
+            if (items.length == 1) return null;
+            Object[] copy = new Object[items.length - 1];
+            System.arraycopy(items, 0, copy, 0, index);
+            System.arraycopy(items, index + 1, copy, index, copy.length - index);
+            return new Leaf(copy);
+        }
+
+        @Override
+        void collect(List<Object> out) {
+            Collections.addAll(out, items);
+        }
+
+        @Override
+        long shallowBytes() {
+            // 物件標頭 12 + 欄位 4，陣列標頭 16 + 每個參照 4
+            return 16 + 16 + 4L * items.length;
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node[] children;
+        final int[] ends; // ends[i] = 前 i+1 個子樹的元素總數
+
+        Branch(Node[] children) {
+            this.children = children;
+            this.ends = new int[children.length];
+            int total = 0;
+            for (int i = 0; i < children.length; i++) {
+                total += children[i].size();
+                ends[i] = total;
+            }
+        }
+
+        @Override
+        int size() {
+            return ends[ends.length - 1];
+        }
+
+        int offset(int child) {
+            return child == 0 ? 0 : ends[child - 1];
+        }
+
+        // 包含 index 的子樹；index == size() 時（附加在最後）回傳最後一個子樹
+        int childFor(int index) {
+            int lo = 0;
+            int hi = ends.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ends[mid] > index) hi = mid;
+                else lo = mid + 1;
+            }
+            return lo;
+        }
+
+        @Override
+        Node set(int index, Object item) {
+            int child = childFor(index);
+            Node[] copy = children.clone();
+            copy[child] = children[child].set(index - offset(child), item);
+            return new Branch(copy);
+        }
+
+        @Override
+        Node[] insert(int index, Object item) {
+            int child = childFor(index);
+            Node[] result = children[child].insert(index - offset(child), item);
+            Node[] copy = new Node[children.length + result.length - 1];
+            System.arraycopy(children, 0, copy, 0, child);
+            System.arraycopy(result, 0, copy, child, result.length);
+            System.arraycopy(children, child + 1, copy, child + result.length, children.length - child - 1);
+            if (copy.length <= BRANCH) return new Node[]{new Branch(copy)};
+            int half = copy.length / 2;
+            Node[] left = new Node[half];
+            Node[] right = new Node[copy.length - half];
+            System.arraycopy(copy, 0, left, 0, half);
+            System.arraycopy(copy, half, right, 0, right.length);
+            return new Node[]{new Branch(left), new Branch(right)};
+        }
+
+        @Override
+        Node remove(int index) {
+            int child = childFor(index);
+            Node result = children[child].remove(index - offset(child));
+            if (result != null) {
+                Node[] copy = children.clone();
+                copy[child] = result;
+                return new Branch(copy);
+            }
+            if (children.length == 1) return null;
+            Node[] copy = new Node[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, child);
+            System.arraycopy(children, child + 1, copy, child, copy.length - child);
+            return new Branch(copy);
+        }
+
+        @Override
+        void collect(List<Object> out) {
+            for (Node child : children) child.collect(out);
+        }
+
+        @Override
+        long shallowBytes() {
+            // 物件標頭 12 + 兩個參照 8，子節點陣列與 ends 陣列
+            return 24 + (16 + 4L * children.length) + (16 + 4L * ends.length);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.falconjk.osmdroidtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 航線的復原/重做歷史。每一步保存一個 PersistentVector 版本，
+ * 相鄰版本共用大部分節點，所以每步只多佔 O(log n) 記憶體。
+ */
+public class RouteHistory {
+
+    /**
+     * 兩個版本之間的差異：from 的 [start, start + removed) 被換成 to 的 [start, start + inserted)。
+     */
+    public static final class Diff {
+        public final int start;
+        public final int removed;
+        public final int inserted;
+
+        Diff(int start, int removed, int inserted) {
+            this.start = start;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        public static Diff between(PersistentVector<Waypoint> from, PersistentVector<Waypoint> to) {
+            int prefix = PersistentVector.commonPrefix(from, to);
+            int limit = Math.min(from.size(), to.size()) - prefix;
+            int suffix = PersistentVector.commonSuffix(from, to, limit);
+            return new Diff(prefix, from.size() - prefix - suffix, to.size() - prefix - suffix);
+        }
+    }
+
+    private final int maxSteps;
+    private final List<PersistentVector<Waypoint>> states = new ArrayList<>();
+    private int cursor;
+
+    public RouteHistory(PersistentVector<Waypoint> initial, int maxSteps) {
+        this.maxSteps = maxSteps;
+        reset(initial);
+    }
+
+    // 清除歷史，以目前狀態作為起點
+    public void reset(PersistentVector<Waypoint> state) {
+        states.clear();
+        states.add(state);
+        cursor = 0;
+    }
+
+    // 記錄新的一步，並捨棄可以重做的版本
+    public void push(PersistentVector<Waypoint> state) {
+        while (states.size() > cursor + 1) {
+            states.remove(states.size() - 1);
+        }
+        states.add(state);
+        if (states.size() > maxSteps + 1) {
+            states.remove(0);
+        }
+        cursor = states.size() - 1;
+    }
+
+    public PersistentVector<Waypoint> current() {
+        return states.get(cursor);
+    }
+
+    public boolean canUndo() {
+        return cursor > 0;
+    }
+
+    public boolean canRedo() {
+        return cursor < states.size() - 1;
+    }
+
+    public PersistentVector<Waypoint> undo() {
+        if (canUndo()) cursor--;
+        return current();
+    }
+
+    public PersistentVector<Waypoint> redo() {
+        if (canRedo()) cursor++;
+        return current();
+    }
+}
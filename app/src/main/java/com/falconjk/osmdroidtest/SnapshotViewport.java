@@ -0,0 +1,108 @@
+package com.falconjk.osmdroidtest;
+
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.List;
+
+/**
+ * 離屏繪製用的 Web Mercator 視窗：選定整數縮放層級，並以整數像素對齊圖塊。
+ */
+public final class SnapshotViewport {
+    public static final double MAX_LATITUDE = 85.05112878;
+
+    public final int zoom;
+    public final int tileSize;
+    public final int width;
+    public final int height;
+    public final long originX; // 左上角在世界像素座標中的位置
+    public final long originY;
+
+    private SnapshotViewport(int zoom, int tileSize, int width, int height, long originX, long originY) {
+        this.zoom = zoom;
+        this.tileSize = tileSize;
+        this.width = width;
+        this.height = height;
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    /**
+     * 包含所有航點並加上 10% 邊距的範圍，與地圖上的「居中顯示」一致。
+     */
+    public static BoundingBox routeBounds(List<GeoPoint> points) {
+        double[] extent = routeExtent(points);
+        return new BoundingBox(extent[0], extent[1], extent[2], extent[3]);
+    }
+
+    /**
+     * 與 routeBounds 相同，以 {北, 東, 南, 西} 回傳。
+     * BoundingBox 會讀取 osmdroid 的全域設定，純計算時改用這個版本。
+     */
+    public static double[] routeExtent(List<GeoPoint> points) {
+        // 創建一個邊界框來包含所有航點
+        double north = -90, south = 90, east = -180, west = 180;
+        for (GeoPoint p : points) {
+            north = Math.max(north, p.getLatitude());
+            south = Math.min(south, p.getLatitude());
+            east = Math.max(east, p.getLongitude());
+            west = Math.min(west, p.getLongitude());
+        }
+
+        // 計算緯度和經度的跨度
+        double latSpan = north - south;
+        double lonSpan = east - west;
+
+        // 添加 10% 的邊距
+        return new double[]{
+                north + (latSpan * 0.1),  // 北緯 + 邊距
+                east + (lonSpan * 0.1),   // 東經 + 邊距
+                south - (latSpan * 0.1),  // 南緯 - 邊距
+                west - (lonSpan * 0.1)    // 西經 - 邊距
+        };
+    }
+
+    /**
+     * 選擇能完整放入範圍（{北, 東, 南, 西}）的最大縮放層級，並讓範圍置中。
+     * 範圍只有一個點時使用 singlePointZoom。
+     */
+    public static SnapshotViewport fit(double[] extent, int width, int height,
+                                       int tileSize, int minZoom, int maxZoom, int singlePointZoom) {
+        double north = extent[0], east = extent[1], south = extent[2], west = extent[3];
+        boolean singlePoint = north == south && east == west;
+        int zoom = singlePoint ? Math.max(minZoom, Math.min(maxZoom, singlePointZoom)) : minZoom;
+        if (!singlePoint) {
+            for (int z = maxZoom; z >= minZoom; z--) {
+                double spanX = worldX(east, z, tileSize) - worldX(west, z, tileSize);
+                double spanY = worldY(south, z, tileSize) - worldY(north, z, tileSize);
+                if (spanX <= width && spanY <= height) {
+                    zoom = z;
+                    break;
+                }
+            }
+        }
+        double centerX = (worldX(east, zoom, tileSize) + worldX(west, zoom, tileSize)) / 2;
+        double centerY = (worldY(north, zoom, tileSize) + worldY(south, zoom, tileSize)) / 2;
+        // 對齊整數像素，圖塊才不會被重新取樣
+        return new SnapshotViewport(zoom, tileSize, width, height,
+                Math.round(centerX - width / 2.0), Math.round(centerY - height / 2.0));
+    }
+
+    public float toPixelX(double longitude) {
+        return (float) (worldX(longitude, zoom, tileSize) - originX);
+    }
+
+    public float toPixelY(double latitude) {
+        return (float) (worldY(latitude, zoom, tileSize) - originY);
+    }
+
+    static double worldX(double longitude, int zoom, int tileSize) {
+        return (longitude + 180) / 360 * ((long) tileSize << zoom);
+    }
+
+    static double worldY(double latitude, int zoom, int tileSize) {
+        double lat = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double sin = Math.sin(Math.toRadians(lat));
+        return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * ((long) tileSize << zoom);
+    }
+}
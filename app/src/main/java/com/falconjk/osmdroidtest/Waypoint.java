@@ -0,0 +1,27 @@
+package com.falconjk.osmdroidtest;
+
+import org.osmdroid.util.GeoPoint;
+
+/**
+ * 不可變的航點，作為航線歷史版本中的元素。
+ * 沒變動的航點在各版本之間是同一個物件，可直接用 == 比較。
+ */
+public final class Waypoint {
+    public final String id; // 與 Marker.getRelatedObject() 相同的 UUID
+    public final double latitude;
+    public final double longitude;
+
+    public Waypoint(String id, double latitude, double longitude) {
+        this.id = id;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public Waypoint(String id, GeoPoint point) {
+        this(id, point.getLatitude(), point.getLongitude());
+    }
+
+    public GeoPoint toGeoPoint() {
+        return new GeoPoint(latitude, longitude);
+    }
+}
@@ -0,0 +1,139 @@
+package com.falconjk.osmdroidtest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 使用 test/resources/dem 下的 11x11 小圖塊：
+ * N25E121 高度 = 100 + 100*(lon-121) + 200*(lat-25)，(25.8, 121.2) 為無資料點；
+ * N25E122 高度 = 200 + 100*(lon-122) + 200*(lat-25)。
+ */
+public class ElevationProfileTest {
+
+    private File demDir;
+
+    @Before
+    public void setUp() throws URISyntaxException {
+        demDir = new File(getClass().getClassLoader().getResource("dem").toURI());
+    }
+
+    private static double expected(double lat, double lon) {
+        return 100 + 100 * (lon - 121) + 200 * (lat - 25);
+    }
+
+    @Test
+    public void elevation_isBilinear() {
+        ElevationProvider provider = new ElevationProvider(demDir);
+        assertEquals(expected(25.0330, 121.5654), provider.getElevation(25.0330, 121.5654), 1e-3);
+        assertEquals(expected(25.55, 122.25), provider.getElevation(25.55, 122.25), 1e-3);
+        assertTrue(Double.isNaN(provider.getElevation(10.5, 10.5)));
+    }
+
+    @Test
+    public void elevation_skipsVoidCorners() {
+        ElevationProvider provider = new ElevationProvider(demDir);
+        double h = provider.getElevation(25.8, 121.2);
+        assertFalse(Double.isNaN(h));
+        assertEquals(expected(25.8, 121.2), provider.getElevation(25.8, 121.25), 60);
+        assertEquals(expected(25.75, 121.25), provider.getElevation(25.75, 121.25), 20);
+    }
+
+    @Test
+    public void provider_evictsLeastRecentlyUsedTile() {
+        ElevationProvider provider = new ElevationProvider(demDir, 1);
+        provider.getElevation(25.5, 121.5);
+        provider.getElevation(25.5, 121.6);
+        assertEquals(1, provider.getTilesOpened());
+        provider.getElevation(25.5, 122.5);
+        provider.getElevation(25.5, 121.5);
+        assertEquals(3, provider.getTilesOpened());
+    }
+
+    @Test
+    public void provider_missingTilesDoNotEvictMappedTiles() {
+        ElevationProvider provider = new ElevationProvider(demDir, 1);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(Double.isNaN(provider.getElevation(25.5, 121.5)));
+            assertTrue(Double.isNaN(provider.getElevation(23.5, 120.5))); // 沒有這個圖塊
+        }
+        assertEquals(1, provider.getTilesOpened());
+    }
+
+    @Test
+    public void sampleSegment_usesFixedSpacingAcrossTiles() {
+        ElevationProvider provider = new ElevationProvider(demDir);
+        GeoPoint start = new GeoPoint(25.5, 121.99);
+        GeoPoint end = new GeoPoint(25.5, 122.01);
+        float[] samples = provider.sampleSegment(start, end, 30);
+        double length = start.distanceToAsDouble(end);
+        assertEquals((int) Math.ceil(length / 30) + 1, samples.length);
+        assertEquals(expected(25.5, 121.99), samples[0], 1e-2);
+        assertEquals(expected(25.5, 122.01), samples[samples.length - 1], 1e-2);
+        for (int i = 1; i < samples.length; i++) {
+            assertTrue(samples[i] > samples[i - 1]);
+        }
+    }
+
+    @Test
+    public void profile_reportsMinimumClearancePerLeg() {
+        ElevationProfile profile = new ElevationProfile(new ElevationProvider(demDir), 30, 120);
+        profile.setWaypoints(Arrays.asList(
+                new GeoPoint(25.1, 121.1),
+                new GeoPoint(25.2, 121.1),
+                new GeoPoint(25.2, 121.3)));
+
+        double takeoff = expected(25.1, 121.1);
+        assertEquals(takeoff + 120, profile.getFlightAltitude(), 1e-2);
+        assertEquals(2, profile.getLegs().size());
+        assertEquals(takeoff + 120 - expected(25.2, 121.1), profile.getMinClearance(0), 1e-2);
+        assertEquals(takeoff + 120 - expected(25.2, 121.3), profile.getMinClearance(1), 1e-2);
+    }
+
+    @Test
+    public void moveWaypoint_resamplesOnlyAdjacentLegs() {
+        ElevationProfile profile = new ElevationProfile(new ElevationProvider(demDir), 30, 120);
+        profile.setWaypoints(Arrays.asList(
+                new GeoPoint(25.1, 121.1),
+                new GeoPoint(25.1, 121.12),
+                new GeoPoint(25.1, 121.14),
+                new GeoPoint(25.1, 121.16),
+                new GeoPoint(25.1, 121.18)));
+        List<ElevationProfile.Leg> before = Arrays.asList(profile.getLegs().toArray(new ElevationProfile.Leg[0]));
+
+        profile.moveWaypoint(2, new GeoPoint(25.12, 121.14));
+
+        List<ElevationProfile.Leg> after = profile.getLegs();
+        assertSame(before.get(0), after.get(0));
+        assertNotSame(before.get(1), after.get(1));
+        assertNotSame(before.get(2), after.get(2));
+        assertSame(before.get(3), after.get(3));
+        assertEquals(expected(25.12, 121.14), after.get(1).maxGround, 1e-2);
+    }
+
+    @Test
+    public void insertAndRemove_keepLegsConsistent() {
+        ElevationProfile profile = new ElevationProfile(new ElevationProvider(demDir), 30, 120);
+        profile.setWaypoints(Arrays.asList(
+                new GeoPoint(25.1, 121.1),
+                new GeoPoint(25.1, 121.2)));
+        profile.insertWaypoint(1, new GeoPoint(25.15, 121.15));
+        assertEquals(2, profile.getLegs().size());
+        assertEquals(expected(25.15, 121.15), profile.getLegs().get(0).maxGround, 1e-2);
+
+        profile.removeWaypoint(1);
+        assertEquals(1, profile.getLegs().size());
+        assertEquals(expected(25.1, 121.2), profile.getLegs().get(0).maxGround, 1e-2);
+
+        profile.removeWaypoint(0);
+        assertTrue(profile.getLegs().isEmpty());
+        assertTrue(Double.isNaN(profile.getFlightAltitude()));
+    }
+}
@@ -0,0 +1,119 @@
+package com.falconjk.osmdroidtest;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * 本機的地面站替身：接受一條連線，依序套用 frame 並回傳確認序號。
+ * 重連時先回覆目前的工作階段 ID 與已套用的最後序號，重送的舊 frame 只確認不重複套用。
+ * 來自其他工作階段的連線必須先送完整快照，套用後改記錄新的工作階段。
+ *
+ * 開發時也可以單獨執行，讓 App 有地面站可連（預設埠 14560，模擬器以 10.0.2.2 連到本機）：
+ *   ./gradlew :app:compileDebugUnitTestJavaWithJavac
+ *   java -cp app/build/intermediates/javac/debug/compileDebugJavaWithJavac/classes:\
+ *       app/build/intermediates/javac/debugUnitTest/compileDebugUnitTestJavaWithJavac/classes \
+ *       com.falconjk.osmdroidtest.GroundStationStub [埠]
+ */
+public class GroundStationStub {
+    private final ServerSocket serverSocket;
+    private final MissionState state = new MissionState();
+    private long session = 0;
+    private long lastApplied = 0;
+    private Socket client;
+    private boolean logFrames = false;
+
+    public GroundStationStub() throws IOException {
+        this(0, InetAddress.getLoopbackAddress());
+    }
+
+    // bindAddress 為 null 時接受所有網路介面的連線
+    public GroundStationStub(int port, InetAddress bindAddress) throws IOException {
+        serverSocket = new ServerSocket(port, 1, bindAddress);
+        Thread acceptor = new Thread(this::acceptLoop, "GroundStationStub");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public MissionState getState() {
+        return state;
+    }
+
+    // 中斷目前連線，模擬鏈路中斷
+    public synchronized void dropClient() throws IOException {
+        if (client != null) client.close();
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+        dropClient();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket s = serverSocket.accept();
+                synchronized (this) {
+                    client = s;
+                }
+                serve(s);
+            } catch (IOException ignored) {
+                // 連線中斷後等待下一次連線
+            }
+        }
+    }
+
+    private void serve(Socket s) throws IOException {
+        try {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            long clientSession = MissionCodec.readVarLong(in);
+            synchronized (this) {
+                MissionCodec.writeVarLong(out, session);
+                MissionCodec.writeVarLong(out, lastApplied);
+            }
+            while (true) {
+                byte[] frame = MissionCodec.readFrame(in);
+                long ack;
+                synchronized (this) {
+                    long seq = MissionCodec.readSeq(frame);
+                    if (clientSession != session) {
+                        if (!MissionCodec.isSnapshot(frame)) {
+                            throw new IOException("工作階段不符且不是快照: " + clientSession);
+                        }
+                        MissionCodec.applyFrame(frame, state);
+                        session = clientSession;
+                        lastApplied = seq;
+                        if (logFrames) System.out.println("新的工作階段 " + Long.toHexString(session) + "：" + state.size() + " 個航點");
+                    } else if (seq == lastApplied + 1) {
+                        MissionCodec.applyFrame(frame, state);
+                        lastApplied = seq;
+                        if (logFrames) System.out.println("frame " + seq + "（" + frame.length + " bytes）：" + state.size() + " 個航點");
+                    } else if (seq > lastApplied + 1) {
+                        throw new IOException("frame 序號不連續: " + seq + ", 已套用 " + lastApplied);
+                    }
+                    ack = lastApplied;
+                }
+                MissionCodec.writeVarLong(out, ack);
+            }
+        } finally {
+            s.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 14560;
+        GroundStationStub station = new GroundStationStub(port, null);
+        station.logFrames = true;
+        System.out.println("地面站替身在埠 " + station.getPort() + " 等待連線");
+        Thread.currentThread().join();
+    }
+}
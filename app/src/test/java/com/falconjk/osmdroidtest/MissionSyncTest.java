@@ -0,0 +1,273 @@
+package com.falconjk.osmdroidtest;
+
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class MissionSyncTest {
+
+    @Test
+    public void varint_roundTripsZigZagDeltas() {
+        long[] values = {0, 1, -1, 63, -64, 64, 1_000_000, -1_000_000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (long value : values) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MissionCodec.writeVarLong(out, MissionCodec.zigZag(value));
+            byte[] bytes = out.toByteArray();
+            assertEquals(MissionCodec.varLongSize(MissionCodec.zigZag(value)), bytes.length);
+            assertEquals(value, MissionCodec.unZigZag(MissionCodec.readVarLong(ByteBuffer.wrap(bytes))));
+        }
+        // ±63 個單位（約 ±0.7 公尺）只需要一個位元組
+        assertEquals(1, MissionCodec.varLongSize(MissionCodec.zigZag(-63)));
+    }
+
+    @Test
+    public void heavyDrag_coalescesIntoOneSmallMove() {
+        MissionOpLog log = new MissionOpLog();
+        MissionState shadow = new MissionState();
+        for (int i = 0; i < 20; i++) {
+            log.recordInsert("wp" + i, i == 0 ? null : "wp" + (i - 1), new GeoPoint(25.03 + i * 0.001, 121.56 + i * 0.001));
+        }
+        byte[] initial = MissionCodec.encodeFrame(1, log.drain(), shadow);
+        // 相鄰航點相距約 100 公尺，差值各 3 位元組，每個新增約 9 位元組；原始 double 座標就要 16 位元組
+        assertTrue("initial frame " + initial.length, initial.length < 20 * 10);
+
+        // 一個視窗內的 1000 次拖動事件，位移約 10 公尺
+        for (int i = 1; i <= 1000; i++) {
+            log.recordMove("wp10", new GeoPoint(25.04 + i * 1e-7, 121.57 - i * 1e-7));
+        }
+        List<MissionOp> ops = log.drain();
+        assertEquals(1, ops.size());
+        byte[] frame = MissionCodec.encodeFrame(2, ops, shadow);
+        // seq + count + type + id + 兩個 2 位元組差值
+        assertEquals(8, frame.length);
+
+        MissionState ground = new MissionState();
+        MissionCodec.applyFrame(initial, ground);
+        MissionCodec.applyFrame(frame, ground);
+        assertEquals(shadow, ground);
+        assertArrayEquals(new int[]{MissionOp.toFixed(25.0401), MissionOp.toFixed(121.5699)}, ground.getPosition(11));
+    }
+
+    @Test
+    public void insertThenDelete_cancelsWithinBatch() {
+        MissionOpLog log = new MissionOpLog();
+        log.recordInsert("a", null, new GeoPoint(25.0, 121.0));
+        log.recordMove("a", new GeoPoint(25.1, 121.1));
+        log.recordDelete("a");
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void deleteOfReferencedInsert_keepsOrder() {
+        MissionOpLog log = new MissionOpLog();
+        log.recordInsert("a", null, new GeoPoint(25.0, 121.0));
+        log.recordInsert("b", "a", new GeoPoint(25.1, 121.1));
+        log.recordInsert("c", "b", new GeoPoint(25.2, 121.2));
+        log.recordMove("b", new GeoPoint(25.15, 121.15));
+        log.recordDelete("b");
+
+        MissionState shadow = new MissionState();
+        MissionState ground = new MissionState();
+        MissionCodec.applyFrame(MissionCodec.encodeFrame(1, log.drain(), shadow), ground);
+        assertEquals(2, ground.size());
+        assertEquals(shadow, ground);
+        assertArrayEquals(new int[]{MissionOp.toFixed(25.2), MissionOp.toFixed(121.2)}, ground.getPosition(3));
+    }
+
+    @Test
+    public void moveOfUnknownWaypoint_keepsFrameReadable() {
+        List<MissionOp> ops = new ArrayList<>();
+        ops.add(MissionOp.move(99, MissionOp.toFixed(25.0), MissionOp.toFixed(121.0)));
+        ops.add(MissionOp.insert(1, 0, MissionOp.toFixed(25.1), MissionOp.toFixed(121.1)));
+
+        MissionState shadow = new MissionState();
+        MissionState ground = new MissionState();
+        assertEquals(7, MissionCodec.applyFrame(MissionCodec.encodeFrame(7, ops, shadow), ground));
+        assertEquals(shadow, ground);
+        assertArrayEquals(new int[]{MissionOp.toFixed(25.1), MissionOp.toFixed(121.1)}, ground.getPosition(1));
+    }
+
+    @Test
+    public void dragSessions_convergeAcrossReconnect() throws Exception {
+        GroundStationStub station = new GroundStationStub();
+        MissionSync sync = new MissionSync("127.0.0.1", station.getPort(), 20);
+        sync.start();
+
+        Random random = new Random(42);
+        List<String> uuids = new ArrayList<>();
+        List<GeoPoint> points = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            String uuid = "wp" + i;
+            GeoPoint p = new GeoPoint(25.03 + random.nextDouble() * 0.01, 121.56 + random.nextDouble() * 0.01);
+            sync.recordInsert(uuid, uuids.isEmpty() ? null : uuids.get(uuids.size() - 1), p);
+            uuids.add(uuid);
+            points.add(p);
+        }
+
+        long naiveBytes = 0;
+        int dragEvents = 0;
+        for (int session = 0; session < 20; session++) {
+            int index = random.nextInt(uuids.size());
+            GeoPoint p = points.get(index);
+            for (int step = 0; step < 100; step++) {
+                p = new GeoPoint(p.getLatitude() + (random.nextDouble() - 0.5) * 1e-5,
+                        p.getLongitude() + (random.nextDouble() - 0.5) * 1e-5);
+                sync.recordMove(uuids.get(index), p);
+                naiveBytes += uuids.size() * 16L; // 每次拖動都送出完整航線
+                dragEvents++;
+                if (step % 10 == 0) Thread.sleep(2);
+            }
+            points.set(index, p);
+            if (session == 8) {
+                station.dropClient();
+            }
+            if (session % 5 == 4) {
+                int removed = random.nextInt(uuids.size());
+                sync.recordDelete(uuids.remove(removed));
+                points.remove(removed);
+            }
+        }
+
+        assertTrue("sync did not converge", sync.awaitSynced(15000));
+        assertEquals(sync.getShadowState(), station.getState());
+
+        List<Integer> order = station.getState().getOrder();
+        assertEquals(points.size(), order.size());
+        for (int i = 0; i < points.size(); i++) {
+            int[] position = station.getState().getPosition(order.get(i));
+            assertEquals(MissionOp.toFixed(points.get(i).getLatitude()), position[0]);
+            assertEquals(MissionOp.toFixed(points.get(i).getLongitude()), position[1]);
+        }
+
+        assertEquals(2000, dragEvents);
+        assertTrue("sent " + sync.getBytesSent() + " vs naive " + naiveBytes,
+                sync.getBytesSent() * 50 < naiveBytes);
+
+        sync.stop();
+        station.close();
+    }
+
+    @Test
+    public void offlineDrags_sendOneFrameAfterReconnect() throws Exception {
+        // 先取得一個沒有地面站的埠，同步開始後才啟動地面站
+        int port;
+        try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+        MissionSync sync = new MissionSync("127.0.0.1", port, 20);
+        sync.start();
+
+        Random random = new Random(7);
+        List<String> uuids = new ArrayList<>();
+        List<GeoPoint> points = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            String uuid = "wp" + i;
+            GeoPoint p = new GeoPoint(25.03 + random.nextDouble() * 0.01, 121.56 + random.nextDouble() * 0.01);
+            sync.recordInsert(uuid, uuids.isEmpty() ? null : uuids.get(uuids.size() - 1), p);
+            uuids.add(uuid);
+            points.add(p);
+        }
+        // 斷線期間跨越多個批次視窗的拖動
+        for (int session = 0; session < 20; session++) {
+            int index = random.nextInt(uuids.size());
+            GeoPoint p = points.get(index);
+            for (int step = 0; step < 100; step++) {
+                p = new GeoPoint(p.getLatitude() + (random.nextDouble() - 0.5) * 1e-5,
+                        p.getLongitude() + (random.nextDouble() - 0.5) * 1e-5);
+                sync.recordMove(uuids.get(index), p);
+                if (step % 10 == 0) Thread.sleep(2);
+            }
+            points.set(index, p);
+        }
+        assertEquals(0, sync.getBytesSent());
+        assertEquals(0, sync.getUnackedCount());
+
+        GroundStationStub station = new GroundStationStub(port, InetAddress.getLoopbackAddress());
+        assertTrue("sync did not converge", sync.awaitSynced(15000));
+        assertEquals(sync.getShadowState(), station.getState());
+
+        // 只多出新工作階段的空快照，其餘等同一次送出最終航線
+        byte[] finalRoute = MissionCodec.encodeFrame(2, station.getState().toSnapshot(), new MissionState());
+        byte[] emptySnapshot = MissionCodec.encodeFrame(1, new MissionState().toSnapshot(), new MissionState());
+        assertTrue("sent " + sync.getBytesSent() + " vs final route " + finalRoute.length,
+                sync.getBytesSent() <= MissionCodec.framedSize(finalRoute) + MissionCodec.framedSize(emptySnapshot));
+
+        sync.stop();
+        station.close();
+    }
+
+    @Test
+    public void newSession_replacesPreviousMissionOnStation() throws Exception {
+        GroundStationStub station = new GroundStationStub();
+        MissionSync first = new MissionSync("127.0.0.1", station.getPort(), 20);
+        first.start();
+        for (int i = 0; i < 3; i++) {
+            first.recordInsert("a" + i, i == 0 ? null : "a" + (i - 1), new GeoPoint(25.03 + i * 0.001, 121.56));
+        }
+        assertTrue(first.awaitSynced(5000));
+        assertEquals(3, station.getState().size());
+        first.stop();
+
+        // 重建畫面後的新實例：序號與航點 ID 都從 1 開始
+        MissionSync second = new MissionSync("127.0.0.1", station.getPort(), 20);
+        second.start();
+        second.recordInsert("b0", null, new GeoPoint(24.0, 120.0));
+        second.recordInsert("b1", "b0", new GeoPoint(24.1, 120.1));
+        assertTrue(second.awaitSynced(5000));
+        assertEquals(second.getShadowState(), station.getState());
+        assertEquals(2, station.getState().size());
+        assertArrayEquals(new int[]{MissionOp.toFixed(24.1), MissionOp.toFixed(120.1)},
+                station.getState().getPosition(2));
+
+        // 同一工作階段重連時不再送快照，繼續增量同步
+        station.dropClient();
+        second.recordMove("b0", new GeoPoint(24.05, 120.05));
+        assertTrue(second.awaitSynced(10000));
+        assertEquals(second.getShadowState(), station.getState());
+
+        second.stop();
+        station.close();
+    }
+
+    @Test(timeout = 20000)
+    public void silentStation_doesNotBlockSync() throws Exception {
+        // 接受連線但從不回覆握手
+        ServerSocket silent = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        List<Socket> accepted = new CopyOnWriteArrayList<>();
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) accepted.add(silent.accept());
+            } catch (IOException ignored) {
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        MissionSync sync = new MissionSync("127.0.0.1", silent.getLocalPort(), 20);
+        sync.start();
+        sync.recordInsert("a", null, new GeoPoint(25.0, 121.0));
+        // 握手逾時後工作執行緒沒有卡住，會再次嘗試連線；異動留著等握手成功
+        long deadline = System.currentTimeMillis() + 15000;
+        while (accepted.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(accepted.size() >= 2);
+        assertEquals(0, sync.getUnackedCount());
+        assertFalse(sync.isSynced());
+
+        sync.stop();
+        silent.close();
+    }
+}
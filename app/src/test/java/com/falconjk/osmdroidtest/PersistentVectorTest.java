@@ -0,0 +1,82 @@
+package com.falconjk.osmdroidtest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PersistentVectorTest {
+
+    @Test
+    public void randomEdits_matchArrayList() {
+        Random random = new Random(7);
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int step = 0; step < 20000; step++) {
+            int op = random.nextInt(10);
+            if (expected.isEmpty() || op < 5) {
+                int index = random.nextInt(expected.size() + 1);
+                vector = vector.insert(index, step);
+                expected.add(index, step);
+            } else if (op < 8) {
+                int index = random.nextInt(expected.size());
+                vector = vector.set(index, -step);
+                expected.set(index, -step);
+            } else {
+                int index = random.nextInt(expected.size());
+                vector = vector.remove(index);
+                expected.remove(index);
+            }
+        }
+        assertEquals(expected.size(), vector.size());
+        assertEquals(expected, vector.toList());
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertEquals(expected.get(i), vector.get(i));
+        }
+    }
+
+    @Test
+    public void oldVersions_areUnchanged() {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) items.add(i);
+        PersistentVector<Integer> original = PersistentVector.of(items);
+
+        PersistentVector<Integer> edited = original.set(500, -1).insert(10, -2).remove(999);
+
+        assertEquals(items, original.toList());
+        assertEquals(1000, edited.size());
+        assertEquals(Integer.valueOf(-2), edited.get(10));
+        assertEquals(Integer.valueOf(-1), edited.get(501));
+    }
+
+    @Test
+    public void removeAll_collapsesToEmpty() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < 100; i++) vector = vector.add(i);
+        for (int i = 0; i < 100; i++) vector = vector.remove(0);
+        assertTrue(vector.isEmpty());
+        assertEquals(1, vector.height());
+        vector = vector.add(1);
+        assertEquals(Integer.valueOf(1), vector.get(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfRangeThrows() {
+        PersistentVector.<Integer>empty().add(1).get(1);
+    }
+
+    @Test
+    public void commonPrefixAndSuffix_skipSharedSubtrees() {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) items.add(i);
+        PersistentVector<Integer> a = PersistentVector.of(items);
+        PersistentVector<Integer> b = a.insert(2500, -1);
+
+        assertEquals(2500, PersistentVector.commonPrefix(a, b));
+        assertEquals(2500, PersistentVector.commonSuffix(a, b, a.size() - 2500));
+        assertEquals(5000, PersistentVector.commonPrefix(a, a));
+    }
+}
@@ -0,0 +1,121 @@
+package com.falconjk.osmdroidtest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RouteHistoryTest {
+
+    private static PersistentVector<Waypoint> route(int size) {
+        List<Waypoint> waypoints = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            waypoints.add(new Waypoint("wp" + i, 25.0 + i * 1e-5, 121.5 + i * 1e-5));
+        }
+        return PersistentVector.of(waypoints);
+    }
+
+    @Test
+    public void undoRedo_walksHistory() {
+        PersistentVector<Waypoint> v0 = route(3);
+        RouteHistory history = new RouteHistory(v0, 10);
+        assertFalse(history.canUndo());
+
+        PersistentVector<Waypoint> v1 = v0.remove(1);
+        history.push(v1);
+        PersistentVector<Waypoint> v2 = v1.add(new Waypoint("x", 25.1, 121.6));
+        history.push(v2);
+
+        assertSame(v1, history.undo());
+        assertSame(v0, history.undo());
+        assertFalse(history.canUndo());
+        assertSame(v1, history.redo());
+
+        // 復原後再編輯會捨棄可重做的版本
+        PersistentVector<Waypoint> v3 = v1.set(0, new Waypoint("wp0", 25.2, 121.7));
+        history.push(v3);
+        assertFalse(history.canRedo());
+        assertSame(v1, history.undo());
+    }
+
+    @Test
+    public void push_dropsOldestBeyondLimit() {
+        PersistentVector<Waypoint> state = route(1);
+        RouteHistory history = new RouteHistory(state, 3);
+        for (int i = 0; i < 5; i++) {
+            state = state.add(new Waypoint("n" + i, 25, 121));
+            history.push(state);
+        }
+        int undos = 0;
+        while (history.canUndo()) {
+            history.undo();
+            undos++;
+        }
+        assertEquals(3, undos);
+        assertEquals(3, history.current().size());
+    }
+
+    @Test
+    public void diff_isolatesSingleEdit() {
+        PersistentVector<Waypoint> v0 = route(2000);
+        Waypoint moved = new Waypoint("wp700", 26, 122);
+
+        RouteHistory.Diff move = RouteHistory.Diff.between(v0, v0.set(700, moved));
+        assertEquals(700, move.start);
+        assertEquals(1, move.removed);
+        assertEquals(1, move.inserted);
+
+        RouteHistory.Diff delete = RouteHistory.Diff.between(v0, v0.remove(1999));
+        assertEquals(1999, delete.start);
+        assertEquals(1, delete.removed);
+        assertEquals(0, delete.inserted);
+
+        // 復原刪除：在原位置插回
+        RouteHistory.Diff undoDelete = RouteHistory.Diff.between(v0.remove(0), v0);
+        assertEquals(0, undoDelete.start);
+        assertEquals(0, undoDelete.removed);
+        assertEquals(1, undoDelete.inserted);
+    }
+
+    @Test
+    public void memoryPerStep_isLogarithmic() {
+        long perStep10k = averageBytesPerStep(10_000);
+        long perStep100k = averageBytesPerStep(100_000);
+
+        // 完整快照至少是每個航點一個參照（4 bytes），這裡遠小於它
+        assertTrue(perStep10k < 10_000 * 4 / 20);
+        assertTrue(perStep100k < 100_000 * 4 / 100);
+        // 規模放大 10 倍，每步成本只多一層節點
+        assertTrue(perStep100k < perStep10k * 2);
+    }
+
+    private static long averageBytesPerStep(int size) {
+        Random random = new Random(size);
+        PersistentVector<Waypoint> state = route(size);
+        RouteHistory history = new RouteHistory(state, 200);
+        long total = 0;
+        int steps = 200;
+        for (int i = 0; i < steps; i++) {
+            PersistentVector<Waypoint> next;
+            int index = random.nextInt(state.size());
+            switch (i % 3) {
+                case 0:
+                    next = state.set(index, new Waypoint("m" + i, 25.5, 121.5));
+                    break;
+                case 1:
+                    next = state.insert(index, new Waypoint("i" + i, 25.5, 121.5));
+                    break;
+                default:
+                    next = state.remove(index);
+                    break;
+            }
+            total += PersistentVector.estimateAddedBytes(state, next);
+            history.push(next);
+            state = next;
+        }
+        return total / steps;
+    }
+}
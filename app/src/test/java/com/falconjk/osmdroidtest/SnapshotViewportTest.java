@@ -0,0 +1,77 @@
+package com.falconjk.osmdroidtest;
+
+import org.junit.Test;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SnapshotViewportTest {
+
+    private static final List<GeoPoint> ROUTE = Arrays.asList(
+            new GeoPoint(25.0350, 121.5674),
+            new GeoPoint(25.0340, 121.5664),
+            new GeoPoint(25.0330, 121.5654));
+    private static final int SINGLE_POINT_ZOOM = 15;
+
+    @Test
+    public void routeBounds_addsTenPercentMargin() {
+        double[] extent = SnapshotViewport.routeExtent(ROUTE);
+        assertEquals(25.0352, extent[0], 1e-9);
+        assertEquals(121.5676, extent[1], 1e-9);
+        assertEquals(25.0328, extent[2], 1e-9);
+        assertEquals(121.5652, extent[3], 1e-9);
+    }
+
+    @Test
+    public void fit_picksLargestZoomThatContainsRoute() {
+        double[] extent = SnapshotViewport.routeExtent(ROUTE);
+        SnapshotViewport viewport = SnapshotViewport.fit(extent, 512, 384, 256, 0, 20, SINGLE_POINT_ZOOM);
+
+        // 全部航點都在畫面內
+        for (GeoPoint p : ROUTE) {
+            float x = viewport.toPixelX(p.getLongitude());
+            float y = viewport.toPixelY(p.getLatitude());
+            assertTrue(x >= 0 && x <= 512);
+            assertTrue(y >= 0 && y <= 384);
+        }
+        // 再放大一級就放不下
+        SnapshotViewport tighter = SnapshotViewport.fit(extent, 512, 384, 256, viewport.zoom + 1, viewport.zoom + 1, SINGLE_POINT_ZOOM);
+        float spanX = tighter.toPixelX(extent[1]) - tighter.toPixelX(extent[3]);
+        float spanY = tighter.toPixelY(extent[2]) - tighter.toPixelY(extent[0]);
+        assertTrue(spanX > 512 || spanY > 384);
+
+        // 範圍置中（誤差在半個像素內）
+        float centerX = (viewport.toPixelX(extent[1]) + viewport.toPixelX(extent[3])) / 2;
+        assertEquals(256, centerX, 0.5);
+    }
+
+    @Test
+    public void fit_respectsSourceZoomRange() {
+        double[] extent = SnapshotViewport.routeExtent(ROUTE);
+        assertEquals(16, SnapshotViewport.fit(extent, 512, 384, 256, 5, 16, SINGLE_POINT_ZOOM).zoom);
+        // 整個台灣在 64x64 的縮圖中，最小層級也放不下時停在最小層級
+        double[] taiwan = {26.0, 122.5, 21.5, 119.5};
+        assertEquals(5, SnapshotViewport.fit(taiwan, 64, 64, 256, 5, 20, SINGLE_POINT_ZOOM).zoom);
+    }
+
+    @Test
+    public void fit_singlePointUsesDefaultZoom() {
+        double[] extent = SnapshotViewport.routeExtent(Collections.singletonList(new GeoPoint(25.033, 121.5654)));
+        SnapshotViewport viewport = SnapshotViewport.fit(extent, 320, 180, 256, 0, 20, SINGLE_POINT_ZOOM);
+        assertEquals(SINGLE_POINT_ZOOM, viewport.zoom);
+        assertEquals(160, viewport.toPixelX(121.5654), 0.5);
+        assertEquals(90, viewport.toPixelY(25.033), 0.5);
+    }
+
+    @Test
+    public void worldCoordinates_matchWebMercator() {
+        assertEquals(128, SnapshotViewport.worldX(0, 0, 256), 1e-9);
+        assertEquals(128, SnapshotViewport.worldY(0, 0, 256), 1e-9);
+        assertEquals(0, SnapshotViewport.worldY(SnapshotViewport.MAX_LATITUDE, 0, 256), 1e-3);
+        assertEquals(512, SnapshotViewport.worldX(180, 1, 256), 1e-9);
+    }
+}